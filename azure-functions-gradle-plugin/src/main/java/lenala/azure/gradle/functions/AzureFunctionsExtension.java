@@ -1,12 +1,103 @@
 package lenala.azure.gradle.functions;
 
+import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.tasks.Input;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AzureFunctionsExtension {
+    public static final String REFLECTION_SCANNER = "reflection";
+    public static final String BYTECODE_SCANNER = "bytecode";
+    public static final String SCAN_SCOPE_PROJECT = "project";
+    public static final String SCAN_SCOPE_SELECTED = "selected";
+    public static final String SCAN_SCOPE_ALL = "all";
+
     @Input
     private String authFile;
 
+    /**
+     * How PackageTask discovers functions and their bindings. Supported values:
+     * <ul>
+     * <li>reflection - load the function classes and read their annotations through reflection</li>
+     * <li>bytecode - read annotations from class files, without loading any scanned class</li>
+     * </ul>
+     */
+    @Input
+    private String annotationScanner;
+
+    /**
+     * Which class path entries PackageTask searches for functions. Supported values:
+     * <ul>
+     * <li>project - classes of this project and of the project dependencies in the same build</li>
+     * <li>selected - as above, plus the external dependencies listed in scanDependencies</li>
+     * <li>all - every jar of the runtime class path</li>
+     * </ul>
+     * Other dependencies are still on the class path used to resolve the function classes.
+     */
+    @Input
+    private String scanScope;
+
+    /**
+     * External dependencies searched for functions with the 'selected' scope, as 'group', 'group:name' or
+     * 'group:name:version'.
+     */
+    @Input
+    private List<String> scanDependencies = new ArrayList<>();
+
+    /**
+     * Log a table of the measured phases after each task, next to the metrics report written to the build directory.
+     */
+    @Input
+    private boolean metricsSummary;
+
+    /**
+     * Write function.json and host.json without indentation.
+     */
+    @Input
+    private boolean compactJson;
+
     public String getAuthFile() {
         return authFile;
     }
+
+    public String getAnnotationScanner() {
+        return StringUtils.isEmpty(annotationScanner) ? REFLECTION_SCANNER : annotationScanner;
+    }
+
+    public void setAnnotationScanner(String annotationScanner) {
+        this.annotationScanner = annotationScanner;
+    }
+
+    public String getScanScope() {
+        return StringUtils.isEmpty(scanScope) ? SCAN_SCOPE_PROJECT : scanScope;
+    }
+
+    public void setScanScope(String scanScope) {
+        this.scanScope = scanScope;
+    }
+
+    public List<String> getScanDependencies() {
+        return scanDependencies;
+    }
+
+    public void setScanDependencies(List<String> scanDependencies) {
+        this.scanDependencies = scanDependencies;
+    }
+
+    public boolean isMetricsSummary() {
+        return metricsSummary;
+    }
+
+    public void setMetricsSummary(boolean metricsSummary) {
+        this.metricsSummary = metricsSummary;
+    }
+
+    public boolean isCompactJson() {
+        return compactJson;
+    }
+
+    public void setCompactJson(boolean compactJson) {
+        this.compactJson = compactJson;
+    }
 }
@@ -1,5 +1,6 @@
 package lenala.azure.gradle.functions;
 
+import lenala.azure.gradle.functions.auth.AzureCredentialsCache;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 
@@ -9,5 +10,6 @@ public class AzureFunctionsPlugin implements Plugin<Project> {
     public void apply(Project project) {
         AzureFunctionsExtension azureFunctionsExtension = new AzureFunctionsExtension();
         project.getExtensions().add(AZURE_FUNCTIONS, azureFunctionsExtension);
+        AzureCredentialsCache.clearWhenBuildFinishes(project.getGradle());
     }
 }
\ No newline at end of file
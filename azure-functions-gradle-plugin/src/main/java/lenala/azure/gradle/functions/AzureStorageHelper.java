@@ -1,25 +1,138 @@
 package lenala.azure.gradle.functions;
 
 import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.blob.BlobContainerPermissions;
 import com.microsoft.azure.storage.blob.BlobContainerPublicAccessType;
+import com.microsoft.azure.storage.blob.BlobListingDetails;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.blob.CloudBlob;
 import com.microsoft.azure.storage.blob.CloudBlobClient;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import com.microsoft.azure.storage.blob.ListBlobItem;
+import com.microsoft.azure.storage.blob.SharedAccessBlobPermissions;
+import com.microsoft.azure.storage.blob.SharedAccessBlobPolicy;
+import lenala.azure.gradle.functions.helpers.BlockBlobUploader;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class AzureStorageHelper {
     public static String uploadFileAsBlob(final File fileToUpload, final CloudStorageAccount storageAccount,
                                           final String containerName, final String blobName) throws Exception {
-        final CloudBlobContainer blobContainer = getBlobContainer(storageAccount, containerName);
-        blobContainer.createIfNotExists(BlobContainerPublicAccessType.BLOB, null, null);
+        final CloudBlobContainer blobContainer = createPrivateContainerIfNotExists(storageAccount, containerName);
+
+        final CloudBlockBlob blob = blobContainer.getBlockBlobReference(blobName);
+        try (final InputStream is = new FileInputStream(fileToUpload)) {
+            blob.upload(is, fileToUpload.length());
+        }
+        return blob.getUri().toString();
+    }
+
+    /**
+     * Upload the file as blocks, concurrently, see {@link BlockBlobUploader}.
+     */
+    public static String uploadFileAsBlob(final File fileToUpload, final CloudStorageAccount storageAccount,
+                                          final String containerName, final String blobName,
+                                          final BlockBlobUploader uploader) throws Exception {
+        final CloudBlobContainer blobContainer = createPrivateContainerIfNotExists(storageAccount, containerName);
 
         final CloudBlockBlob blob = blobContainer.getBlockBlobReference(blobName);
-        blob.upload(new FileInputStream(fileToUpload), fileToUpload.length());
+        uploader.upload(fileToUpload, blob);
         return blob.getUri().toString();
     }
 
+    /**
+     * Upload the content produced by the writer without materializing it locally first.
+     */
+    public static String uploadStreamAsBlob(final BlobWriter writer, final CloudStorageAccount storageAccount,
+                                            final String containerName, final String blobName,
+                                            final int concurrency) throws Exception {
+        final CloudBlobContainer blobContainer = createPrivateContainerIfNotExists(storageAccount, containerName);
+
+        final CloudBlockBlob blob = blobContainer.getBlockBlobReference(blobName);
+        final BlobRequestOptions options = BlockBlobUploader.getRequestOptions();
+        options.setConcurrentRequestCount(concurrency);
+        try (final OutputStream os = blob.openOutputStream(null, options, null)) {
+            writer.write(os);
+        }
+        return blob.getUri().toString();
+    }
+
+    /**
+     * Blobs are only readable with a shared access signature, see {@link #getBlobReadUri}. Containers created
+     * public by earlier versions are made private.
+     */
+    public static CloudBlobContainer createPrivateContainerIfNotExists(final CloudStorageAccount storageAccount,
+                                                                       final String containerName) throws Exception {
+        final CloudBlobContainer blobContainer = getBlobContainer(storageAccount, containerName);
+        if (!blobContainer.createIfNotExists(BlobContainerPublicAccessType.OFF, null, null)) {
+            final BlobContainerPermissions permissions = blobContainer.downloadPermissions();
+            if (permissions.getPublicAccess() != BlobContainerPublicAccessType.OFF) {
+                permissions.setPublicAccess(BlobContainerPublicAccessType.OFF);
+                blobContainer.uploadPermissions(permissions);
+            }
+        }
+        return blobContainer;
+    }
+
+    /**
+     * @return URI of the blob with a shared access signature granting read access for the given time
+     */
+    public static String getBlobReadUri(final CloudStorageAccount storageAccount, final String containerName,
+                                        final String blobName, final long validityMinutes) throws Exception {
+        final CloudBlockBlob blob = getBlobContainer(storageAccount, containerName).getBlockBlobReference(blobName);
+        final SharedAccessBlobPolicy policy = new SharedAccessBlobPolicy();
+        policy.setPermissions(EnumSet.of(SharedAccessBlobPermissions.READ));
+        policy.setSharedAccessExpiryTime(new Date(System.currentTimeMillis() +
+                TimeUnit.MINUTES.toMillis(validityMinutes)));
+        return blob.getUri() + "?" + blob.generateSharedAccessSignature(policy, null);
+    }
+
+    /**
+     * @return URI of the blob, or null when it does not exist; checked with a single HEAD request
+     */
+    public static String getBlobUriIfExists(final CloudStorageAccount storageAccount, final String containerName,
+                                            final String blobName) throws Exception {
+        final CloudBlockBlob blob = getBlobContainer(storageAccount, containerName).getBlockBlobReference(blobName);
+        return blob.exists() ? blob.getUri().toString() : null;
+    }
+
+    public static void setBlobMetadata(final CloudStorageAccount storageAccount, final String containerName,
+                                       final String blobName, final String key, final String value)
+            throws Exception {
+        final CloudBlockBlob blob = getBlobContainer(storageAccount, containerName).getBlockBlobReference(blobName);
+        blob.downloadAttributes();
+        blob.getMetadata().put(key, value);
+        blob.uploadMetadata();
+    }
+
+    /**
+     * @return blobs of the container with their metadata, or an empty list when the container does not exist
+     */
+    public static List<CloudBlob> listBlobsWithMetadata(final CloudStorageAccount storageAccount,
+                                                        final String containerName) throws Exception {
+        final CloudBlobContainer blobContainer = getBlobContainer(storageAccount, containerName);
+        final List<CloudBlob> blobs = new ArrayList<>();
+        if (blobContainer.exists()) {
+            for (final ListBlobItem item : blobContainer.listBlobs(null, true,
+                    EnumSet.of(BlobListingDetails.METADATA), null, null)) {
+                if (item instanceof CloudBlob) {
+                    blobs.add((CloudBlob) item);
+                }
+            }
+        }
+        return blobs;
+    }
+
     public static void deleteBlob(final CloudStorageAccount storageAccount, final String containerName,
                                   final String blobName) throws Exception {
         final CloudBlobContainer blobContainer = getBlobContainer(storageAccount, containerName);
@@ -29,6 +142,11 @@ public class AzureStorageHelper {
         }
     }
 
+    @FunctionalInterface
+    public interface BlobWriter {
+        void write(OutputStream os) throws IOException;
+    }
+
     private static CloudBlobContainer getBlobContainer(final CloudStorageAccount storageAccount,
                                                        final String containerName) throws Exception {
         final CloudBlobClient blobClient = storageAccount.createCloudBlobClient();
@@ -1,15 +1,24 @@
 package lenala.azure.gradle.functions;
 
+import lenala.azure.gradle.functions.configuration.AppTarget;
 import lenala.azure.gradle.functions.handlers.ArtifactHandler;
 import lenala.azure.gradle.functions.handlers.FTPArtifactHandlerImpl;
 import lenala.azure.gradle.functions.handlers.MSDeployArtifactHandlerImpl;
+import lenala.azure.gradle.functions.helpers.BlockBlobUploader;
+import lenala.azure.gradle.functions.helpers.ParallelDeployer;
+import lenala.azure.gradle.functions.helpers.PhaseMetrics;
+import lenala.azure.gradle.functions.helpers.WarmUpProbe;
 import lenala.azure.gradle.functions.model.PricingTierEnum;
 import com.microsoft.azure.management.appservice.FunctionApp;
 import com.microsoft.azure.management.appservice.PricingTier;
+import groovy.lang.Closure;
 import org.apache.commons.lang3.StringUtils;
+import org.gradle.api.GradleException;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskExecutionException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.function.Consumer;
@@ -23,6 +32,8 @@ public class DeployTask extends FunctionsTask {
     private static final String FUNCTION_APP_CREATED = "Successfully created Function App ";
     private static final String FUNCTION_APP_UPDATE = "Updating Function App...";
     private static final String FUNCTION_APP_UPDATE_DONE = "Successfully updated Function App ";
+    private static final String MANAGEMENT_CALLS = "Azure management API calls: %d";
+    private static final String TARGET_APP_NAME_MISSING = "App name of a deploy target is not configured.";
 
     private static final String MS_DEPLOY = "msdeploy";
     private static final String FTP = "ftp";
@@ -57,6 +68,89 @@ public class DeployTask extends FunctionsTask {
      */
     private String deploymentType;
 
+    /**
+     * Deflate level (0-9) of the msdeploy ZIP package. Jars and other compressed files are always stored as is.
+     */
+    private Integer zipCompressionLevel;
+
+    /**
+     * Glob patterns, relative to the staging directory, of files left out of the msdeploy ZIP package.
+     * local.settings.json is always left out.
+     */
+    private List<String> zipExcludes = new ArrayList<>();
+
+    /**
+     * Write the msdeploy ZIP package straight to Azure Storage, without saving it in the build directory.
+     */
+    private boolean streamZipPackage;
+
+    /**
+     * Size in bytes of the blocks the msdeploy ZIP package is uploaded in.
+     */
+    private int uploadBlockSize = BlockBlobUploader.DEFAULT_BLOCK_SIZE;
+
+    /**
+     * Number of blocks of the msdeploy ZIP package uploaded at the same time.
+     */
+    private int uploadConcurrency = BlockBlobUploader.DEFAULT_CONCURRENCY;
+
+    /**
+     * Name the msdeploy ZIP package after its SHA-256, skip the upload when it is already in Azure Storage, and
+     * keep the most recently deployed packages instead of deleting the package after deployment.
+     */
+    private boolean contentAddressedPackage;
+
+    /**
+     * Number of content addressed packages kept in Azure Storage.
+     */
+    private int packageRetentionCount = 5;
+
+    /**
+     * For the ftp deployment type, only upload files changed since the previous deployment.
+     */
+    private boolean ftpSync;
+
+    /**
+     * With ftpSync, delete files uploaded by the previous deployment which no longer exist locally.
+     */
+    private boolean ftpDeleteStale;
+
+    /**
+     * Function Apps to deploy to instead of the configured one, at the same time.
+     */
+    private List<AppTarget> targets = new ArrayList<>();
+
+    /**
+     * Number of targets deployed to at the same time.
+     */
+    private int deployConcurrency = ParallelDeployer.DEFAULT_CONCURRENCY;
+
+    /**
+     * Stop starting deployments to further targets once one has failed.
+     */
+    private boolean failFast = true;
+
+    /**
+     * Paths, relative to the Function App host, requested after deployment to warm it up and measure its latency.
+     */
+    private List<String> probePaths = new ArrayList<>();
+
+    /**
+     * Number of warm-up requests sent to each of the probe paths.
+     */
+    private int probeRequests = WarmUpProbe.DEFAULT_REQUEST_COUNT;
+
+    /**
+     * Number of warm-up requests sent at the same time.
+     */
+    private int probeConcurrency = WarmUpProbe.DEFAULT_CONCURRENCY;
+
+    /**
+     * Fail the deployment when the p95 warm-up latency exceeds this number of milliseconds, or a warm-up request
+     * fails. 0 for no budget.
+     */
+    private long probeLatencyBudget;
+
     public void setPricingTier(PricingTierEnum pricingTier) {
         this.pricingTier = pricingTier;
     }
@@ -65,6 +159,80 @@ public class DeployTask extends FunctionsTask {
         this.deploymentType = deploymentType;
     }
 
+    public void setZipCompressionLevel(Integer zipCompressionLevel) {
+        this.zipCompressionLevel = zipCompressionLevel;
+    }
+
+    public void setZipExcludes(List<String> zipExcludes) {
+        this.zipExcludes = zipExcludes;
+    }
+
+    public void setStreamZipPackage(boolean streamZipPackage) {
+        this.streamZipPackage = streamZipPackage;
+    }
+
+    public void setUploadBlockSize(int uploadBlockSize) {
+        this.uploadBlockSize = uploadBlockSize;
+    }
+
+    public void setUploadConcurrency(int uploadConcurrency) {
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    public void setContentAddressedPackage(boolean contentAddressedPackage) {
+        this.contentAddressedPackage = contentAddressedPackage;
+    }
+
+    public void setPackageRetentionCount(int packageRetentionCount) {
+        this.packageRetentionCount = packageRetentionCount;
+    }
+
+    public void setFtpSync(boolean ftpSync) {
+        this.ftpSync = ftpSync;
+    }
+
+    public void setFtpDeleteStale(boolean ftpDeleteStale) {
+        this.ftpDeleteStale = ftpDeleteStale;
+    }
+
+    public void setTargets(List<Closure<?>> closures) {
+        targets = new ArrayList<>();
+        if (closures != null) {
+            closures.forEach(closure -> {
+                final AppTarget target = new AppTarget();
+                getProject().configure(target, closure);
+                if (StringUtils.isBlank(target.getAppName())) {
+                    throw new GradleException(TARGET_APP_NAME_MISSING);
+                }
+                targets.add(target);
+            });
+        }
+    }
+
+    public void setDeployConcurrency(int deployConcurrency) {
+        this.deployConcurrency = deployConcurrency;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public void setProbePaths(List<String> probePaths) {
+        this.probePaths = probePaths;
+    }
+
+    public void setProbeRequests(int probeRequests) {
+        this.probeRequests = probeRequests;
+    }
+
+    public void setProbeConcurrency(int probeConcurrency) {
+        this.probeConcurrency = probeConcurrency;
+    }
+
+    public void setProbeLatencyBudget(long probeLatencyBudget) {
+        this.probeLatencyBudget = probeLatencyBudget;
+    }
+
     public PricingTier getPricingTier() {
         return pricingTier == null ? null : pricingTier.toPricingTier();
     }
@@ -73,44 +241,148 @@ public class DeployTask extends FunctionsTask {
         return StringUtils.isEmpty(deploymentType) ? MS_DEPLOY : deploymentType;
     }
 
+    public Integer getZipCompressionLevel() {
+        return zipCompressionLevel;
+    }
+
+    public List<String> getZipExcludes() {
+        return zipExcludes;
+    }
+
+    public boolean isStreamZipPackage() {
+        return streamZipPackage;
+    }
+
+    public int getUploadBlockSize() {
+        return uploadBlockSize;
+    }
+
+    public int getUploadConcurrency() {
+        return uploadConcurrency;
+    }
+
+    public boolean isContentAddressedPackage() {
+        return contentAddressedPackage;
+    }
+
+    public int getPackageRetentionCount() {
+        return packageRetentionCount;
+    }
+
+    public boolean isFtpSync() {
+        return ftpSync;
+    }
+
+    public boolean isFtpDeleteStale() {
+        return ftpDeleteStale;
+    }
+
+    public List<AppTarget> getTargets() {
+        return targets;
+    }
+
+    public int getDeployConcurrency() {
+        return deployConcurrency;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public List<String> getProbePaths() {
+        return probePaths == null ? new ArrayList<>() : probePaths;
+    }
+
+    public int getProbeRequests() {
+        return probeRequests;
+    }
+
+    public int getProbeConcurrency() {
+        return probeConcurrency;
+    }
+
+    public long getProbeLatencyBudget() {
+        return probeLatencyBudget;
+    }
+
 
     @TaskAction
     void deployFunction() {
+        final long managementCallCount = azureAuthHelper.getManagementCallCount();
         try {
-            getLogger().quiet(FUNCTION_DEPLOY_START + getAppName() + "...");
+            if (targets.isEmpty()) {
+                deployToFunctionApp(getAppTarget());
+            } else {
+                // Authenticate and initialize the settings shared by the targets on the task thread
+                getAzureClient();
+                getAppSettings();
+                final List<AppTarget> appTargets = new ArrayList<>();
+                targets.forEach(target -> appTargets.add(target.withDefaults(getAppTarget())));
+                new ParallelDeployer<AppTarget>(getLogger(), deployConcurrency, failFast).deploy(appTargets,
+                        this::deployToFunctionApp);
+            }
+        } catch (Exception ex) {
+            throw new TaskExecutionException(this, ex);
+        } finally {
+            getLogger().quiet(String.format(MANAGEMENT_CALLS,
+                    azureAuthHelper.getManagementCallCount() - managementCallCount));
+            writeMetricsReport();
+        }
+    }
 
-            createOrUpdateFunctionApp();
+    private void deployToFunctionApp(final AppTarget target) throws Exception {
+        getLogger().quiet(FUNCTION_DEPLOY_START + target.getAppName() + "...");
 
-            getArtifactHandler().publish();
+        final ArtifactHandler artifactHandler = getArtifactHandler(target);
+        artifactHandler.prepare(getFunctionApp(target));
 
-            getLogger().quiet(String.format(FUNCTION_DEPLOY_SUCCESS, getAppName()));
-        } catch (Exception ex) {
-            throw new TaskExecutionException(this, ex);
+        boolean updated = false;
+        try {
+            getMetrics().run("create/update", target.getAppName(), () -> createOrUpdateFunctionApp(target));
+            updated = true;
+        } finally {
+            if (!updated) {
+                artifactHandler.abort();
+            }
+        }
+
+        artifactHandler.publish();
+
+        getLogger().quiet(String.format(FUNCTION_DEPLOY_SUCCESS, target.getAppName()));
+
+        if (!getProbePaths().isEmpty()) {
+            final String baseUrl = "https://" + getFunctionApp(target).defaultHostName();
+            final WarmUpProbe.Result result;
+            try (PhaseMetrics.Phase phase = getMetrics().start("warm-up", target.getAppName())) {
+                result = new WarmUpProbe(getLogger(), probeRequests, probeConcurrency).probe(baseUrl, getProbePaths());
+                phase.addRemoteCalls(result.getRequestCount());
+            }
+            WarmUpProbe.assureLatencyBudget(result, probeLatencyBudget);
         }
     }
 
-    private void createOrUpdateFunctionApp() throws Exception {
-        final FunctionApp app = getFunctionApp();
+    private void createOrUpdateFunctionApp(final AppTarget target) throws Exception {
+        final FunctionApp app = getFunctionApp(target);
         if (app == null) {
-            createFunctionApp();
+            createFunctionApp(target);
         } else {
-            updateFunctionApp(app);
+            updateFunctionApp(target, app);
         }
     }
 
-    private void createFunctionApp() throws Exception {
+    private void createFunctionApp(final AppTarget target) throws Exception {
         getLogger().quiet(FUNCTION_APP_CREATE_START);
 
-        final FunctionApp.DefinitionStages.NewAppServicePlanWithGroup newAppServicePlanWithGroup = defineApp(getAppName(), getRegion());
-        final FunctionApp.DefinitionStages.WithCreate withCreate = configureResourceGroup(newAppServicePlanWithGroup, getResourceGroup());
+        final FunctionApp.DefinitionStages.NewAppServicePlanWithGroup newAppServicePlanWithGroup = defineApp(target.getAppName(), target.getRegion());
+        final FunctionApp.DefinitionStages.WithCreate withCreate = configureResourceGroup(newAppServicePlanWithGroup, target.getResourceGroup());
         configurePricingTier(withCreate, getPricingTier());
         configureAppSettings(withCreate::withAppSettings, getAppSettings());
-        withCreate.create();
+        setFunctionApp(target, withCreate.create());
 
-        getLogger().quiet(FUNCTION_APP_CREATED + getAppName());
+        getLogger().quiet(FUNCTION_APP_CREATED + target.getAppName());
     }
 
-    private void updateFunctionApp(final FunctionApp app) {
+    private void updateFunctionApp(final AppTarget target, final FunctionApp app) {
         getLogger().quiet(FUNCTION_APP_UPDATE);
 
         // Work around of https://github.com/Azure/azure-sdk-for-java/issues/1755
@@ -118,9 +390,9 @@ public class DeployTask extends FunctionsTask {
 
         final FunctionApp.Update update = app.update();
         configureAppSettings(update::withAppSettings, getAppSettings());
-        update.apply();
+        setFunctionApp(target, update.apply());
 
-        getLogger().quiet(FUNCTION_APP_UPDATE_DONE + getAppName());
+        getLogger().quiet(FUNCTION_APP_UPDATE_DONE + target.getAppName());
     }
 
     private FunctionApp.DefinitionStages.NewAppServicePlanWithGroup defineApp(final String appName, final String region) throws Exception {
@@ -153,13 +425,13 @@ public class DeployTask extends FunctionsTask {
         }
     }
 
-    private ArtifactHandler getArtifactHandler() {
+    private ArtifactHandler getArtifactHandler(final AppTarget target) {
         switch (getDeploymentType().toLowerCase(Locale.ENGLISH)) {
             case FTP:
-                return new FTPArtifactHandlerImpl(this);
+                return new FTPArtifactHandlerImpl(this, target);
             case MS_DEPLOY:
             default:
-                return new MSDeployArtifactHandlerImpl(this);
+                return new MSDeployArtifactHandlerImpl(this, target);
         }
     }
 }
@@ -3,22 +3,32 @@ package lenala.azure.gradle.functions;
 import lenala.azure.gradle.functions.auth.AuthConfiguration;
 import lenala.azure.gradle.functions.auth.AzureAuthFailureException;
 import lenala.azure.gradle.functions.auth.AzureAuthHelper;
+import lenala.azure.gradle.functions.configuration.AppTarget;
+import lenala.azure.gradle.functions.helpers.PhaseMetrics;
 import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.management.appservice.FunctionApp;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Internal;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static lenala.azure.gradle.functions.AzureFunctionsPlugin.AZURE_FUNCTIONS;
 
 public abstract class FunctionsTask extends DefaultTask implements AuthConfiguration {
     private static final String AZURE_INIT_FAIL = "Failed to authenticate with Azure. Please check your configuration.";
+    private static final String METRICS_WRITE_FAIL = "Failed to write the metrics report: ";
+    private static final String METRICS_SUFFIX = "-metrics";
 
     protected AzureFunctionsExtension azureFunctionsExtension;
     protected AzureAuthHelper azureAuthHelper;
-    private Azure azure;
+    private volatile Azure azure;
+    private final Map<String, FunctionApp> functionApps = new ConcurrentHashMap<>();
+    private final PhaseMetrics metrics = new PhaseMetrics(() -> azureAuthHelper.getManagementCallCount());
 
     protected Object settings;
 
@@ -43,6 +53,7 @@ public abstract class FunctionsTask extends DefaultTask implements AuthConfigura
 
     private Map<String, String> appSettings;
 
+    @Internal
     public String getFinalName() {
         if (finalName == null) {
             finalName = getProject().getTasks().getByPath("jar").property("archiveName").toString().replace(".jar", "");
@@ -54,10 +65,12 @@ public abstract class FunctionsTask extends DefaultTask implements AuthConfigura
         this.finalName = finalName;
     }
 
+    @Internal
     public String getResourceGroup() {
         return resourceGroup;
     }
 
+    @Internal
     public String getAppName() {
         return appName;
     }
@@ -74,10 +87,20 @@ public abstract class FunctionsTask extends DefaultTask implements AuthConfigura
         this.region = region;
     }
 
+    @Internal
     public String getRegion() {
         return region;
     }
 
+    /**
+     * The configured Function App, which is deployed to unless other targets are configured.
+     */
+    @Internal
+    public AppTarget getAppTarget() {
+        return new AppTarget(appName, resourceGroup, region);
+    }
+
+    @Internal
     public Map getAppSettings() {
         if (appSettings == null) {
             appSettings = new HashMap<>();
@@ -96,6 +119,7 @@ public abstract class FunctionsTask extends DefaultTask implements AuthConfigura
     }
 
     @Override
+    @Internal
     public String getUserAgent() {
         return getName() + " " + getGroup();
 //        return String.format("%s/%s %s:%s %s:%s", this.getName(), this.getGroup()
@@ -105,6 +129,7 @@ public abstract class FunctionsTask extends DefaultTask implements AuthConfigura
     }
 
     @Override
+    @Internal
     public String getSubscriptionId() {
         return (String) getProject().getProperties().get("subscriptionId");
     }
@@ -120,41 +145,103 @@ public abstract class FunctionsTask extends DefaultTask implements AuthConfigura
     }
 
     @Override
+    @Internal
     public String getAuthFile() {
         return azureFunctionsExtension.getAuthFile();
     }
 
+    /**
+     * Authenticated once per task, also when several targets are deployed to at the same time.
+     */
+    @Internal
     public Azure getAzureClient() throws AzureAuthFailureException {
         if (azure == null) {
-            azure = azureAuthHelper.getAzureClient();
-            if (azure == null) {
-                throw new AzureAuthFailureException(AZURE_INIT_FAIL);
-            } else {
-                // Repopulate subscriptionId in case it is not configured.
-//                getTelemetryProxy().addDefaultProperty(SUBSCRIPTION_ID_KEY, azure.subscriptionId());
+            synchronized (this) {
+                if (azure == null) {
+                    final Azure azureClient = metrics.time("auth", null, azureAuthHelper::getAzureClient);
+                    if (azureClient == null) {
+                        throw new AzureAuthFailureException(AZURE_INIT_FAIL);
+                    } else {
+                        // Repopulate subscriptionId in case it is not configured.
+//                        getTelemetryProxy().addDefaultProperty(SUBSCRIPTION_ID_KEY, azureClient.subscriptionId());
+                    }
+                    azure = azureClient;
+                }
             }
         }
         return azure;
     }
 
+    @Internal
     public String getBuildDirectoryAbsolutePath() {
         return getProject().getBuildDir().getAbsolutePath();
     }
 
+    /**
+     * Staging directory of the configured app, also when deploying it to other targets.
+     */
+    @Internal
     public String getDeploymentStageDirectory() {
         return Paths.get(getBuildDirectoryAbsolutePath(),
                 AZURE_FUNCTIONS,
-                getAppName()).toString();
+                appName).toString();
+    }
+
+    /**
+     * The Function App is looked up once per task, and replaced by the result of a create or update.
+     */
+    public FunctionApp getFunctionApp(final AppTarget target) throws AzureAuthFailureException {
+        FunctionApp functionApp = functionApps.get(getFunctionAppKey(target));
+        if (functionApp == null) {
+            // Authenticate first, so that it is measured on its own and its failure is not swallowed
+            final Azure azureClient = getAzureClient();
+            try {
+                functionApp = metrics.time("app lookup", target.getAppName(), () -> azureClient.appServices()
+                        .functionApps().getByResourceGroup(target.getResourceGroup(), target.getAppName()));
+                setFunctionApp(target, functionApp);
+            } catch (Exception ex) {
+                // Swallow exception for non-existing function app
+            }
+        }
+        return functionApp;
     }
 
-    public FunctionApp getFunctionApp() throws AzureAuthFailureException {
+    protected void setFunctionApp(final AppTarget target, final FunctionApp functionApp) {
+        if (functionApp != null) {
+            functionApps.put(getFunctionAppKey(target), functionApp);
+        }
+    }
+
+    /**
+     * Look the Function App up again on next use, after it was changed other than through this task.
+     */
+    public void invalidateFunctionApp(final AppTarget target) {
+        functionApps.remove(getFunctionAppKey(target));
+    }
+
+    private static String getFunctionAppKey(final AppTarget target) {
+        return target.getResourceGroup() + "/" + target.getAppName();
+    }
+
+    @Internal
+    public PhaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Write the phases measured by the task to build/azurefunctions/&lt;task name&gt;-metrics.json and .csv.
+     */
+    protected void writeMetricsReport() {
+        final String baseName = Paths.get(getBuildDirectoryAbsolutePath(), AZURE_FUNCTIONS,
+                getName() + METRICS_SUFFIX).toString();
         try {
-            return getAzureClient().appServices().functionApps().getByResourceGroup(getResourceGroup(), getAppName());
-        } catch (AzureAuthFailureException authEx) {
-            throw authEx;
-        } catch (Exception ex) {
-            // Swallow exception for non-existing function app
+            metrics.writeJson(new File(baseName + ".json"));
+            metrics.writeCsv(new File(baseName + ".csv"));
+        } catch (IOException e) {
+            getLogger().warn(METRICS_WRITE_FAIL + e.getMessage());
+        }
+        if (azureFunctionsExtension.isMetricsSummary()) {
+            metrics.logSummary(getLogger());
         }
-        return null;
     }
 }
@@ -1,30 +1,69 @@
 package lenala.azure.gradle.functions;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.hash.Hashing;
 import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
 import lenala.azure.gradle.functions.handlers.AnnotationHandler;
 import lenala.azure.gradle.functions.handlers.AnnotationHandlerImpl;
+import lenala.azure.gradle.functions.handlers.BytecodeAnnotationHandlerImpl;
+import lenala.azure.gradle.functions.helpers.FunctionIndex;
+import lenala.azure.gradle.functions.helpers.PhaseMetrics;
 import org.apache.commons.io.FileUtils;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskExecutionException;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static lenala.azure.gradle.functions.AzureFunctionsPlugin.AZURE_FUNCTIONS;
+
+@CacheableTask
 public class PackageTask extends FunctionsTask {
     private static final String SEARCH_FUNCTIONS = "Step 1 of 6: Searching for Azure Function entry points";
+    private static final String SCAN_SCOPE = "Scan scope '%s': searching %d class path entries, %d more for resolving";
     private static final String FOUND_FUNCTIONS = " Azure Function entry point(s) found.";
     private static final String GENERATE_CONFIG = "Step 2 of 6: Generating Azure Function configurations";
     private static final String GENERATE_SKIP = "No Azure Functions found. Skip configuration generation.";
@@ -37,56 +76,188 @@ public class PackageTask extends FunctionsTask {
     private static final String SAVE_SKIP = "No configurations found. Skip save.";
     private static final String SAVE_FUNCTION_JSON = "Starting processing function: ";
     private static final String SAVE_SUCCESS = "Successfully saved to ";
+    private static final String SAVE_UNCHANGED = "Unchanged, keeping ";
+    private static final String REMOVE_STALE_FUNCTION = "Removing function no longer declared: ";
+    private static final String FINGERPRINTS_READ_FAIL = "Failed to read function fingerprints, all files are saved: ";
     private static final String COPY_JARS = "Step 6 of 6: Copying JARs to staging directory ";
     private static final String COPY_HOST_JSON = "Step 4 of 6: Copying existing host.json";
     private static final String COPY_SUCCESS = "Copied successfully.";
+    private static final String COPY_UNCHANGED = "Unchanged, skip copying to ";
     private static final String BUILD_SUCCESS = "Successfully built Azure Functions.";
 
     private static final String FUNCTION_JSON = "function.json";
     private static final String HOST_JSON = "host.json";
+    private static final String LOCAL_SETTINGS_JSON = "local.settings.json";
+    private static final String RUNTIME_CLASSPATH = "runtimeClasspath";
+    private static final String FINGERPRINTS_SUFFIX = "-fingerprints.json";
+
+    // Writers are immutable and thread-safe, so they are shared by all functions and all runs
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    private static final ObjectWriter PRETTY_WRITER = OBJECT_MAPPER.writerWithDefaultPrettyPrinter();
+    private static final ObjectWriter COMPACT_WRITER = OBJECT_MAPPER.writer();
+
+    /**
+     * Compiled classes searched for functions.
+     */
+    @Classpath
+    public FileCollection getCompiledClasses() {
+        final ConfigurableFileCollection classes = getProject().files(
+                getProject().getTasks().getByPath("compileJava").getOutputs().getFiles());
+        if (outputDirectory != null) {
+            classes.from(outputDirectory);
+        }
+        return classes;
+    }
+
+    /**
+     * Runtime class path, searched depending on the scan scope and used to resolve the function classes.
+     */
+    @Classpath
+    public FileCollection getRuntimeClasspath() {
+        final Configuration runtimeClasspath = getProject().getConfigurations().findByName(RUNTIME_CLASSPATH);
+        return runtimeClasspath == null ? getProject().files() : runtimeClasspath;
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public File getJarFile() {
+        return new File(getProject().getTasks().getByPath("jar").getOutputs().getFiles().getAsPath());
+    }
+
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    public File getHostJsonFile() {
+        final File hostJsonFile = new File(getProject().getProjectDir(), HOST_JSON);
+        return hostJsonFile.exists() ? hostJsonFile : null;
+    }
+
+    @InputFile
+    @Optional
+    @PathSensitive(PathSensitivity.NONE)
+    public File getLocalSettingsJsonFile() {
+        final File localSettingsJsonFile = new File(getProject().getProjectDir(), LOCAL_SETTINGS_JSON);
+        return localSettingsJsonFile.exists() ? localSettingsJsonFile : null;
+    }
+
+    @Input
+    @Override
+    public String getFinalName() {
+        return super.getFinalName();
+    }
+
+    @Input
+    public String getScanScope() {
+        return azureFunctionsExtension.getScanScope();
+    }
+
+    @Input
+    public List<String> getScanDependencies() {
+        return azureFunctionsExtension.getScanDependencies();
+    }
+
+    @Input
+    public boolean isCompactJson() {
+        return azureFunctionsExtension.isCompactJson();
+    }
+
+    @OutputDirectory
+    public File getStagingDirectory() {
+        return new File(getDeploymentStageDirectory());
+    }
+
+    /**
+     * The function index and the fingerprints only speed up the next run, they are not restored from the cache.
+     */
+    @LocalState
+    public List<File> getIncrementalState() {
+        return Arrays.asList(getFunctionIndexFile(), getFingerprintFile());
+    }
 
     @TaskAction
     void packageFunction() {
         try {
-            final AnnotationHandler handler = getAnnotationHandler();
+            try (AnnotationHandler<?> handler = getAnnotationHandler()) {
+                packageFunction(handler);
+            }
+
+            getLogger().quiet(BUILD_SUCCESS);
+        } catch (Exception ex) {
+            throw new TaskExecutionException(this, ex);
+        } finally {
+            writeMetricsReport();
+        }
+    }
 
-            final Set<Method> methods = findAnnotatedMethods(handler);
+    private <T> void packageFunction(final AnnotationHandler<T> handler) throws Exception {
+        final PhaseMetrics metrics = getMetrics();
+        final Set<T> methods = metrics.time("scan", getAppName(), () -> findAnnotatedMethods(handler));
 
-            final Map<String, FunctionConfiguration> configMap = getFunctionConfigurations(handler, methods);
+        final Map<String, FunctionConfiguration> configMap = metrics.time("config generation", getAppName(), () -> {
+            final Map<String, FunctionConfiguration> configurations = getFunctionConfigurations(handler, methods);
 
-            validateFunctionConfigurations(configMap);
+            validateFunctionConfigurations(configurations);
+            return configurations;
+        });
 
-            final ObjectWriter objectWriter = getObjectWriter();
+        metrics.run("config save", getAppName(), () -> {
+            final ObjectWriter objectWriter = isCompactJson() ? COMPACT_WRITER : PRETTY_WRITER;
+            Files.createDirectories(getStagingDirectory().toPath());
 
             writeHostJsonFile(objectWriter);
 
             copyLocalSettingsJson();
 
             writeFunctionJsonFiles(objectWriter, configMap);
+        });
 
+        try (PhaseMetrics.Phase phase = metrics.start("copy jars", getAppName())) {
             copyJarsToStageDirectory();
+            phase.addBytes(getJarFile().length());
+        }
+    }
 
-            getLogger().quiet(BUILD_SUCCESS);
-        } catch (Exception ex) {
-            throw new TaskExecutionException(this, ex);
+    private AnnotationHandler<?> getAnnotationHandler() {
+        final int parallelism = getParallelism();
+        final FunctionIndex functionIndex = new FunctionIndex(getFunctionIndexFile(), getLogger(), parallelism);
+        switch (azureFunctionsExtension.getAnnotationScanner().toLowerCase(Locale.ENGLISH)) {
+            case AzureFunctionsExtension.BYTECODE_SCANNER:
+                return new BytecodeAnnotationHandlerImpl(getLogger(), functionIndex).withParallelism(parallelism);
+            case AzureFunctionsExtension.REFLECTION_SCANNER:
+            default:
+                return new AnnotationHandlerImpl(getLogger(), functionIndex).withParallelism(parallelism);
         }
     }
 
-    private AnnotationHandler getAnnotationHandler() throws Exception {
-        return new AnnotationHandlerImpl(getLogger());
+    /**
+     * Threads used for scanning and config generation, bounded like the other work of the build.
+     */
+    private int getParallelism() {
+        return getProject().getGradle().getStartParameter().getMaxWorkerCount();
     }
 
-    private Set<Method> findAnnotatedMethods(final AnnotationHandler handler) throws Exception {
+    /**
+     * The index lives next to the staging directories, so it survives between builds but not 'clean'.
+     */
+    private File getFunctionIndexFile() {
+        return Paths.get(getBuildDirectoryAbsolutePath(), AZURE_FUNCTIONS, FunctionIndex.INDEX_FILE).toFile();
+    }
+
+    private <T> Set<T> findAnnotatedMethods(final AnnotationHandler<T> handler) throws Exception {
         getLogger().quiet(SEARCH_FUNCTIONS);
-        Set<Method> functions;
+        Set<T> functions;
         try {
-            final List<URL> dependencyWithTargetClass = getDependencyArtifactUrls();
-            dependencyWithTargetClass.addAll(getTargetClassUrls());
-            functions = handler.findFunctions(dependencyWithTargetClass);
+            final List<URL> scanUrls = new ArrayList<>(getTargetClassUrls());
+            final List<URL> classpathUrls = new ArrayList<>();
+            splitDependencyArtifactUrls(scanUrls, classpathUrls);
+            getLogger().quiet(String.format(SCAN_SCOPE, azureFunctionsExtension.getScanScope(), scanUrls.size(),
+                    classpathUrls.size()));
+            functions = handler.findFunctions(scanUrls, classpathUrls);
         } catch (NoClassDefFoundError e) {
             // fallback to reflect through artifact url
             getLogger().quiet("ClassPath to resolve: " + getArtifactUrl());
-            functions = handler.findFunctions(Arrays.asList(getArtifactUrl()));
+            functions = handler.findFunctions(Arrays.asList(getArtifactUrl()), Collections.emptyList());
         }
         getLogger().quiet(functions.size() + FOUND_FUNCTIONS);
         return functions;
@@ -99,45 +270,93 @@ public class PackageTask extends FunctionsTask {
         //        return this.getProject().getArtifact().getFile().toURI().toURL();
     }
 
-    private Set<URL> getTargetClassUrls() throws Exception {
-        Set<URL> targetClassUrls = new HashSet<>();
-        getProject().getTasks().getByPath("compileJava").getOutputs().getFiles().forEach(file -> {
+    private Set<URL> getTargetClassUrls() {
+        Set<URL> targetClassUrls = new LinkedHashSet<>();
+        getCompiledClasses().forEach(file -> {
             try {
                 targetClassUrls.add(file.toURI().toURL());
             } catch (MalformedURLException e) {
                 getLogger().quiet("Failed to parse URL: " + file);
             }
         });
-        if (outputDirectory != null) {
-            targetClassUrls.add(new File(outputDirectory).toURI().toURL());
-        }
         return targetClassUrls;
     }
 
     /**
-     * @return URLs for the classpath with compile scope needed jars
+     * Split the runtime class path by the scan scope: artifacts in scope are searched for functions,
+     * the others are only used to resolve the function classes.
      */
-    protected List<URL> getDependencyArtifactUrls() {
-        final List<URL> urlList = new ArrayList<>();
-        final List<String> compileClasspathElements = new ArrayList<>();
-        try {
-//            compileClasspathElements.addAll(this.getProject().getCompileClasspathElements());
-        } catch (Exception e) {
-            getLogger().quiet("Failed to resolve dependencies for compile scope, exception: " + e.getMessage());
-        }
-        for (final String element : compileClasspathElements) {
-            final File f = new File(element);
+    private void splitDependencyArtifactUrls(final List<URL> scanUrls, final List<URL> classpathUrls) {
+        final String scanScope = azureFunctionsExtension.getScanScope().toLowerCase(Locale.ENGLISH);
+        for (final ResolvedArtifact artifact : getDependencyArtifacts()) {
+            final URL url;
             try {
-                urlList.add(f.toURI().toURL());
+                url = artifact.getFile().toURI().toURL();
             } catch (MalformedURLException e) {
-                getLogger().quiet("Failed to get URL for file: " + f.toString());
+                getLogger().quiet("Failed to get URL for file: " + artifact.getFile());
+                continue;
+            }
+            if (isInScanScope(artifact.getId().getComponentIdentifier(), artifact.getModuleVersion().getId(),
+                    scanScope, azureFunctionsExtension.getScanDependencies())) {
+                scanUrls.add(url);
+            } else {
+                classpathUrls.add(url);
             }
         }
-        return urlList;
     }
 
-    private Map<String, FunctionConfiguration> getFunctionConfigurations(final AnnotationHandler handler,
-                                                                         final Set<Method> methods) throws Exception {
+    /**
+     * Project dependencies are always searched, external dependencies as selected by the scan scope.
+     */
+    static boolean isInScanScope(final ComponentIdentifier componentId, final ModuleVersionIdentifier moduleId,
+                                 final String scanScope, final List<String> scanDependencies) {
+        if (componentId instanceof ProjectComponentIdentifier) {
+            return true;
+        }
+        switch (scanScope) {
+            case AzureFunctionsExtension.SCAN_SCOPE_ALL:
+                return true;
+            case AzureFunctionsExtension.SCAN_SCOPE_SELECTED:
+                return scanDependencies.stream().anyMatch(coordinates -> matchesCoordinates(moduleId, coordinates));
+            case AzureFunctionsExtension.SCAN_SCOPE_PROJECT:
+            default:
+                return false;
+        }
+    }
+
+    private static boolean matchesCoordinates(final ModuleVersionIdentifier id, final String coordinates) {
+        final String[] parts = coordinates.split(":");
+        final String[] values = {id.getGroup(), id.getName(), id.getVersion()};
+        if (parts.length > values.length) {
+            return false;
+        }
+        for (int i = 0; i < parts.length; i++) {
+            if (!parts[i].equals(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return artifacts of the runtime class path, which is what the function host loads
+     */
+    @Internal
+    protected Set<ResolvedArtifact> getDependencyArtifacts() {
+        final Configuration runtimeClasspath = getProject().getConfigurations().findByName(RUNTIME_CLASSPATH);
+        if (runtimeClasspath == null) {
+            return Collections.emptySet();
+        }
+        try {
+            return runtimeClasspath.getResolvedConfiguration().getResolvedArtifacts();
+        } catch (Exception e) {
+            getLogger().quiet("Failed to resolve dependencies for runtime scope, exception: " + e.getMessage());
+            return Collections.emptySet();
+        }
+    }
+
+    private <T> Map<String, FunctionConfiguration> getFunctionConfigurations(final AnnotationHandler<T> handler,
+                                                                             final Set<T> methods) throws Exception {
         getLogger().quiet(GENERATE_CONFIG);
         final Map<String, FunctionConfiguration> configMap = handler.generateConfigurations(methods);
         if (configMap.size() == 0) {
@@ -173,66 +392,185 @@ public class PackageTask extends FunctionsTask {
     private void writeFunctionJsonFiles(final ObjectWriter objectWriter,
                                         final Map<String, FunctionConfiguration> configMap) throws IOException {
         getLogger().quiet(SAVE_FUNCTION_JSONS);
+        final File fingerprintFile = getFingerprintFile();
+        final Map<String, String> previousFingerprints = readFingerprints(fingerprintFile);
+        final Map<String, String> fingerprints = new ConcurrentHashMap<>();
         if (configMap.size() == 0) {
             getLogger().quiet(SAVE_SKIP);
         } else {
+            createFunctionDirectories(configMap.keySet());
+            final List<Callable<Void>> tasks = new ArrayList<>();
             for (final Map.Entry<String, FunctionConfiguration> config : configMap.entrySet()) {
-                writeFunctionJsonFile(objectWriter, config.getKey(), config.getValue());
+                tasks.add(() -> {
+                    fingerprints.put(config.getKey(), writeFunctionJsonFile(objectWriter, config.getKey(),
+                            config.getValue(), previousFingerprints.get(config.getKey())));
+                    return null;
+                });
             }
+            runTasks(tasks);
         }
+        removeStaleFunctions(previousFingerprints.keySet(), configMap.keySet());
+        writeBytesToFile(OBJECT_MAPPER.writeValueAsBytes(new TreeMap<>(fingerprints)), fingerprintFile);
     }
 
-    private void writeFunctionJsonFile(final ObjectWriter objectWriter, final String functionName,
-                                       final FunctionConfiguration config) throws IOException {
+    /**
+     * Create the directories of all functions up front, listing the staging directory once instead of checking
+     * each function directory.
+     */
+    private void createFunctionDirectories(final Set<String> functionNames) throws IOException {
+        final String[] existing = getStagingDirectory().list();
+        final Set<String> existingNames = existing == null ? Collections.emptySet() :
+                new HashSet<>(Arrays.asList(existing));
+        for (final String functionName : functionNames) {
+            if (!existingNames.contains(functionName)) {
+                Files.createDirectories(Paths.get(getDeploymentStageDirectory(), functionName));
+            }
+        }
+    }
+
+    /**
+     * Run the tasks on up to Gradle's max worker count threads, and rethrow the first failure in task order.
+     */
+    private void runTasks(final List<Callable<Void>> tasks) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(getParallelism(), tasks.size()));
+        try {
+            for (final Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return fingerprint of the serialized configuration; the file is only rewritten when it changed
+     */
+    private String writeFunctionJsonFile(final ObjectWriter objectWriter, final String functionName,
+                                         final FunctionConfiguration config, final String previousFingerprint)
+            throws IOException {
         getLogger().quiet(SAVE_FUNCTION_JSON + functionName);
         final File functionJsonFile = Paths.get(getDeploymentStageDirectory(), functionName, FUNCTION_JSON).toFile();
-        writeObjectToFile(objectWriter, config, functionJsonFile);
-        getLogger().quiet(SAVE_SUCCESS + functionJsonFile.getAbsolutePath());
+        final byte[] content = objectWriter.writeValueAsBytes(config);
+        final String fingerprint = Hashing.sha256().hashBytes(content).toString();
+        if (fingerprint.equals(previousFingerprint) &&
+                functionJsonFile.exists() && functionJsonFile.length() == content.length) {
+            getLogger().quiet(SAVE_UNCHANGED + functionJsonFile.getAbsolutePath());
+        } else {
+            writeBytesToFile(content, functionJsonFile);
+            getLogger().quiet(SAVE_SUCCESS + functionJsonFile.getAbsolutePath());
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Functions saved by a previous run but no longer declared are removed from the staging directory.
+     */
+    private void removeStaleFunctions(final Set<String> previousFunctions, final Set<String> functions)
+            throws IOException {
+        for (final String functionName : previousFunctions) {
+            if (!functions.contains(functionName)) {
+                getLogger().quiet(REMOVE_STALE_FUNCTION + functionName);
+                FileUtils.deleteDirectory(Paths.get(getDeploymentStageDirectory(), functionName).toFile());
+            }
+        }
+    }
+
+    /**
+     * Fingerprints live next to the staging directory, so they are not packaged with the functions.
+     */
+    private File getFingerprintFile() {
+        return Paths.get(getBuildDirectoryAbsolutePath(), AZURE_FUNCTIONS, getAppName() + FINGERPRINTS_SUFFIX)
+                .toFile();
+    }
+
+    private Map<String, String> readFingerprints(final File fingerprintFile) {
+        if (fingerprintFile.exists()) {
+            try {
+                return OBJECT_MAPPER.readValue(fingerprintFile, new TypeReference<Map<String, String>>() {
+                });
+            } catch (IOException e) {
+                getLogger().warn(FINGERPRINTS_READ_FAIL + e.getMessage());
+            }
+        }
+        return Collections.emptyMap();
     }
 
     private void writeHostJsonFile(final ObjectWriter objectWriter) throws IOException {
-        final File srcHostJsonFile = new File(getProject().getProjectDir().getAbsolutePath() + "/host.json");
+        final File srcHostJsonFile = getHostJsonFile();
         final File destHostJsonFile = Paths.get(getDeploymentStageDirectory(), HOST_JSON).toFile();
 
-        if (srcHostJsonFile.exists()) {
+        if (srcHostJsonFile != null) {
             getLogger().quiet(COPY_HOST_JSON);
-            FileUtils.copyFile(srcHostJsonFile, destHostJsonFile);
+            copyFileIfChanged(srcHostJsonFile, destHostJsonFile);
             getLogger().quiet(COPY_SUCCESS);
         } else {
             getLogger().quiet(SAVE_HOST_JSON);
-            writeObjectToFile(objectWriter, new Object(), destHostJsonFile);
-            getLogger().quiet(SAVE_SUCCESS + destHostJsonFile.getAbsolutePath());
+            final byte[] content = objectWriter.writeValueAsBytes(new Object());
+            if (destHostJsonFile.exists() && Arrays.equals(content, Files.readAllBytes(destHostJsonFile.toPath()))) {
+                getLogger().quiet(SAVE_UNCHANGED + destHostJsonFile.getAbsolutePath());
+            } else {
+                writeBytesToFile(content, destHostJsonFile);
+                getLogger().quiet(SAVE_SUCCESS + destHostJsonFile.getAbsolutePath());
+            }
         }
     }
 
-    private void writeObjectToFile(final ObjectWriter objectWriter, final Object object, final File targetFile)
-            throws IOException {
-        targetFile.getParentFile().mkdirs();
-        targetFile.createNewFile();
-        objectWriter.writeValue(targetFile, object);
+    /**
+     * Copies keep the source modification time, so a target with the same size and time is up to date.
+     */
+    private void copyFileIfChanged(final File srcFile, final File destFile) throws IOException {
+        if (destFile.exists() &&
+                destFile.length() == srcFile.length() && destFile.lastModified() == srcFile.lastModified()) {
+            getLogger().quiet(COPY_UNCHANGED + destFile.getAbsolutePath());
+            return;
+        }
+        FileUtils.copyFile(srcFile, destFile);
     }
 
-    private ObjectWriter getObjectWriter() {
-        return new ObjectMapper()
-                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
-                .writerWithDefaultPrettyPrinter();
+    /**
+     * The parent directory must exist.
+     */
+    private static void writeBytesToFile(final byte[] content, final File targetFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
     }
 
 
     private void copyJarsToStageDirectory() throws IOException {
         final String stagingDirectory = getDeploymentStageDirectory();
         getLogger().quiet(COPY_JARS + stagingDirectory);
-        String jarName = getProject().getTasks().getByPath("jar").getOutputs().getFiles().getAsPath();
-        getLogger().quiet(jarName);
-        FileUtils.copyFileToDirectory(new File(jarName), new File(getDeploymentStageDirectory()));
+        final File jarFile = getJarFile();
+        getLogger().quiet(jarFile.getAbsolutePath());
+        copyFileIfChanged(jarFile, new File(stagingDirectory, jarFile.getName()));
 
         getLogger().quiet(COPY_SUCCESS);
     }
 
+    /**
+     * local.settings.json is optional; a copy left from a previous build is removed when the project has none.
+     */
     private void copyLocalSettingsJson() throws IOException {
-        final String stagingDirectory = getDeploymentStageDirectory();
+        final File srcLocalSettingsJsonFile = getLocalSettingsJsonFile();
+        final File destLocalSettingsJsonFile = new File(getDeploymentStageDirectory(), LOCAL_SETTINGS_JSON);
+        if (srcLocalSettingsJsonFile == null) {
+            Files.deleteIfExists(destLocalSettingsJsonFile.toPath());
+            return;
+        }
         getLogger().quiet("Copying local.settings.json...");
-        FileUtils.copyFileToDirectory(new File(getProject().getProjectDir().getAbsolutePath() + "/local.settings.json"), new File(getDeploymentStageDirectory()));
+        copyFileIfChanged(srcLocalSettingsJsonFile, destLocalSettingsJsonFile);
 
         getLogger().quiet(COPY_SUCCESS);
 
@@ -1,19 +1,25 @@
 package lenala.azure.gradle.functions.auth;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.credentials.ApplicationTokenCredentials;
 import com.microsoft.azure.credentials.AzureCliCredentials;
+import com.microsoft.azure.credentials.AzureTokenCredentials;
 import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.management.Azure.Authenticated;
 import com.microsoft.rest.LogLevel;
+import okhttp3.Interceptor;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Helper class to authenticate with Azure
@@ -43,6 +49,7 @@ public class AzureAuthHelper {
     private static final String AZURE_CLI_AUTH_FAIL = "Failed to authenticate with Azure CLI 2.0";
 
     private AuthConfiguration config;
+    private final AtomicLong managementCallCount = new AtomicLong();
     private Logger logger = Logging.getLogger(AzureAuthHelper.class);
 
     /**
@@ -57,12 +64,18 @@ public class AzureAuthHelper {
         this.config = config;
     }
 
+    /**
+     * @return client of this helper, authenticated with the credentials shared with the other tasks of the build using
+     * the same settings, see {@link AzureCredentialsCache}
+     */
     public Azure getAzureClient() {
-        final Authenticated auth = getAuthObj();
-        if (auth == null) {
+        final AzureTokenCredentials credentials =
+                AzureCredentialsCache.getOrCreate(getCredentialsKey(), this::getCredentials);
+        if (credentials == null) {
             return null;
         }
         try {
+            final Authenticated auth = azureConfigure().authenticate(credentials);
             final String subscriptionId = config.getSubscriptionId();
             return StringUtils.isEmpty(subscriptionId) ?
                     auth.withDefaultSubscription() :
@@ -73,6 +86,33 @@ public class AzureAuthHelper {
         return null;
     }
 
+    /**
+     * @return number of requests sent to the Azure management API by the clients of this helper
+     */
+    public long getManagementCallCount() {
+        return managementCallCount.get();
+    }
+
+    /**
+     * Hash of the settings selecting credentials, subscription and environment.
+     */
+    private String getCredentialsKey() {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(String.valueOf(config.getSubscriptionId()), StandardCharsets.UTF_8);
+        if (config.hasAuthenticationSettings()) {
+            for (final String key : new String[]{CLIENT_ID, TENANT_ID, KEY, CERTIFICATE, CERTIFICATE_PASSWORD,
+                    ENVIRONMENT}) {
+                hasher.putString("|" + config.getAuthenticationSetting(key), StandardCharsets.UTF_8);
+            }
+            final String authFile = config.getAuthFile();
+            hasher.putString("|" + authFile, StandardCharsets.UTF_8);
+            if (authFile != null) {
+                hasher.putLong(new File(authFile).lastModified());
+            }
+        }
+        return hasher.hash().toString();
+    }
+
     private LogLevel getLogLevel() {
         return logger.isDebugEnabled() ?
                 LogLevel.BODY_AND_HEADERS :
@@ -82,7 +122,15 @@ public class AzureAuthHelper {
     private Azure.Configurable azureConfigure() {
         return Azure.configure()
                 .withLogLevel(getLogLevel())
-                .withUserAgent(config.getUserAgent());
+                .withUserAgent(config.getUserAgent())
+                .withInterceptor(getManagementCallCounter());
+    }
+
+    private Interceptor getManagementCallCounter() {
+        return chain -> {
+            managementCallCount.incrementAndGet();
+            return chain.proceed(chain.request());
+        };
     }
 
     private AzureEnvironment getAzureEnvironment(String environment) {
@@ -102,46 +150,42 @@ public class AzureAuthHelper {
         }
     }
 
-    private Authenticated getAuthObj() {
-        Authenticated auth;
+    private AzureTokenCredentials getCredentials() {
+        AzureTokenCredentials credentials;
         // check if project has Azure authentication settings in build.gradle or gradle.properties
         boolean hasAuthSetting = config.hasAuthenticationSettings();
         if (hasAuthSetting) {
-            auth = getAuthObjFromConfiguration(config);
-            if (auth == null) {
-                auth = getAuthObjFromFile(new File(config.getAuthFile()));
+            credentials = getCredentialsFromConfiguration();
+            if (credentials == null) {
+                credentials = getCredentialsFromFile(
+                        config.getAuthFile() == null ? null : new File(config.getAuthFile()));
             }
         } else {
-            auth = getAuthObjFromAzureCli();
+            credentials = getCredentialsFromAzureCli();
         }
-        return auth;
+        return credentials;
     }
 
     /**
-     * Get Authenticated object by reading app token credentials from gradle.properties
+     * Get credentials by reading app token credentials from gradle.properties
      *
-     * @return Authenticated object if configurations are correct; otherwise return null.
+     * @return credentials if configurations are correct; otherwise return null.
      */
-    private Authenticated getAuthObjFromConfiguration(final AuthConfiguration config) {
+    private AzureTokenCredentials getCredentialsFromConfiguration() {
         final ApplicationTokenCredentials credential = getAppTokenCredentials();
-        if (credential == null) {
-            return null;
-        }
-
-        final Authenticated auth = azureConfigure().authenticate(credential);
-        if (auth != null) {
+        if (credential != null) {
             logger.quiet(AUTH_WITH_CLIENT_ID + config.getAuthenticationSetting(CLIENT_ID));
         }
-        return auth;
+        return credential;
     }
 
     /**
-     * Get Authenticated object using file.
+     * Get credentials using file.
      *
      * @param authFile Authentication file object.
-     * @return Authenticated object of file is valid; otherwise return null.
+     * @return credentials if file is valid; otherwise return null.
      */
-    private Authenticated getAuthObjFromFile(final File authFile) {
+    private AzureTokenCredentials getCredentialsFromFile(final File authFile) {
         if (authFile == null) {
             logger.debug(AUTH_FILE_NOT_CONFIG);
             return null;
@@ -153,11 +197,9 @@ public class AzureAuthHelper {
         }
 
         try {
-            final Authenticated auth = azureConfigure().authenticate(authFile);
-            if (auth != null) {
-                logger.quiet(AUTH_WITH_FILE + authFile.getAbsolutePath());
-            }
-            return auth;
+            final AzureTokenCredentials credentials = ApplicationTokenCredentials.fromFile(authFile);
+            logger.quiet(AUTH_WITH_FILE + authFile.getAbsolutePath());
+            return credentials;
         } catch (Exception e) {
             logger.error(AUTH_FILE_READ_FAIL + authFile.getAbsolutePath(), e);
         }
@@ -165,17 +207,15 @@ public class AzureAuthHelper {
     }
 
     /**
-     * Get Authenticated object using authentication file from Azure CLI 2.0
+     * Get credentials using authentication file from Azure CLI 2.0
      *
-     * @return Authenticated object if Azure CLI 2.0 is logged in correctly; otherwise return null.
+     * @return credentials if Azure CLI 2.0 is logged in correctly; otherwise return null.
      */
-    private Authenticated getAuthObjFromAzureCli() {
+    private AzureTokenCredentials getCredentialsFromAzureCli() {
         try {
-            final Authenticated auth = azureConfigure().authenticate(AzureCliCredentials.create());
-            if (auth != null) {
-                logger.quiet(AUTH_WITH_AZURE_CLI);
-            }
-            return auth;
+            final AzureTokenCredentials credentials = AzureCliCredentials.create();
+            logger.quiet(AUTH_WITH_AZURE_CLI);
+            return credentials;
         } catch (Exception e) {
             logger.debug(AZURE_CLI_AUTH_FAIL, e);
         }
@@ -0,0 +1,45 @@
+package lenala.azure.gradle.functions.auth;
+
+import com.microsoft.azure.credentials.AzureTokenCredentials;
+import org.gradle.api.invocation.Gradle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Azure credentials shared by the tasks and projects of a build, one per credentials, subscription and environment.
+ * The credentials keep their tokens until they expire, so tasks deploying with the same settings authenticate once;
+ * each task builds its own client on top of them with its own user agent and management call count. Credentials are
+ * dropped when the build finishes, as the daemon outlives the build.
+ * <p>
+ * The cache lives in the class loader of the plugin, so projects loading the plugin through their own buildscript
+ * class path still authenticate separately.
+ */
+public final class AzureCredentialsCache {
+    private static final Map<String, AzureTokenCredentials> CREDENTIALS = new ConcurrentHashMap<>();
+    private static Gradle registeredBuild;
+
+    private AzureCredentialsCache() {
+    }
+
+    /**
+     * @param key      identifies the credentials, subscription and environment, without containing secrets
+     * @param supplier reads the credentials, called once per key; null results are not cached
+     */
+    public static AzureTokenCredentials getOrCreate(final String key, final Supplier<AzureTokenCredentials> supplier) {
+        return CREDENTIALS.computeIfAbsent(key, k -> supplier.get());
+    }
+
+    public static synchronized void clearWhenBuildFinishes(final Gradle gradle) {
+        if (registeredBuild != gradle) {
+            registeredBuild = gradle;
+            gradle.buildFinished(result -> clear());
+        }
+    }
+
+    public static synchronized void clear() {
+        CREDENTIALS.clear();
+        registeredBuild = null;
+    }
+}
@@ -3,7 +3,12 @@ package lenala.azure.gradle.functions.bindings;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -28,6 +33,14 @@ public class Binding {
         requiredAttributeMap.put(BindingEnum.HttpTrigger, Arrays.asList("authLevel"));
     }
 
+    // A ClassValue does not keep the annotation types of user projects from being unloaded with their class loader
+    private static final ClassValue<AnnotationAccessors> annotationAccessors = new ClassValue<AnnotationAccessors>() {
+        @Override
+        protected AnnotationAccessors computeValue(final Class<?> annotationType) {
+            return new AnnotationAccessors(annotationType);
+        }
+    };
+
     public Binding(BindingEnum bindingEnum) {
         this.bindingEnum = bindingEnum;
         this.type = bindingEnum.getType();
@@ -36,17 +49,27 @@ public class Binding {
 
     public Binding(BindingEnum bindingEnum, Annotation annotation) {
         this(bindingEnum);
-        final Class<? extends Annotation> annotationType = annotation.annotationType();
         try {
-            for (final Method propertyMethod : annotationType.getDeclaredMethods()) {
-                final Object value = propertyMethod.invoke(annotation);
-                addProperties(value, propertyMethod);
+            final AnnotationAccessors accessors = annotationAccessors.get(annotation.annotationType());
+            for (final AnnotationAccessors.Attribute attribute : accessors.attributes) {
+                addProperty(attribute.name, attribute.getter.invokeExact(annotation), attribute.defaultValue);
             }
-        } catch (Exception e) {
+        } catch (Throwable e) {
             throw new RuntimeException("Resolving binding attributes failed", e);
         }
     }
 
+    /**
+     * Create a binding from raw annotation values, e.g. read from a class file without loading the annotation.
+     *
+     * @param attributeValues values of all annotation attributes, including defaulted ones
+     * @param defaultValues   default values of the annotation attributes
+     */
+    public Binding(BindingEnum bindingEnum, Map<String, Object> attributeValues, Map<String, Object> defaultValues) {
+        this(bindingEnum);
+        attributeValues.forEach((name, value) -> addProperty(name, value, defaultValues.get(name)));
+    }
+
     public String getType() {
         return type;
     }
@@ -96,8 +119,7 @@ public class Binding {
                 .toString();
     }
 
-    protected void addProperties(Object value, Method propertyMethod) {
-        final String propertyName = propertyMethod.getName();
+    protected void addProperty(String propertyName, Object value, Object defaultValue) {
         if (propertyName.equals("direction") && value instanceof String) {
             this.direction = BindingEnum.Direction.fromString((String) value);
             return;
@@ -108,11 +130,49 @@ public class Binding {
             return;
         }
 
-        if (!value.equals(propertyMethod.getDefaultValue()) ||
-                (requiredAttributeMap.get(bindingEnum) != null &&
-                        requiredAttributeMap.get(bindingEnum).contains(propertyName))) {
+        final List<String> requiredAttributes = requiredAttributeMap.get(bindingEnum);
+        if (!value.equals(defaultValue) ||
+                (requiredAttributes != null && requiredAttributes.contains(propertyName))) {
             bindingAttributes.put(propertyName, value);
         }
 
     }
+
+    /**
+     * Getters and default values of the attributes of an annotation type, looked up once per type.
+     */
+    private static class AnnotationAccessors {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Annotation.class);
+
+        private final List<Attribute> attributes = new ArrayList<>();
+
+        AnnotationAccessors(final Class<?> annotationType) {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (final Method method : annotationType.getDeclaredMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                // Annotation types declared by users need not be public
+                method.setAccessible(true);
+                try {
+                    attributes.add(new Attribute(method.getName(), lookup.unreflect(method).asType(GETTER_TYPE),
+                            method.getDefaultValue()));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        private static class Attribute {
+            private final String name;
+            private final MethodHandle getter;
+            private final Object defaultValue;
+
+            Attribute(final String name, final MethodHandle getter, final Object defaultValue) {
+                this.name = name;
+                this.getter = getter;
+                this.defaultValue = defaultValue;
+            }
+        }
+    }
 }
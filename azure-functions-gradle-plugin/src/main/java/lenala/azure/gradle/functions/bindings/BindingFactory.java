@@ -3,23 +3,53 @@ package lenala.azure.gradle.functions.bindings;
 import com.microsoft.azure.functions.annotation.CustomBinding;
 
 import java.lang.annotation.Annotation;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 public class BindingFactory {
     private static final String HTTP_OUTPUT_DEFAULT_NAME = "$return";
 
+    private static final Map<String, BindingEnum> BINDING_ENUMS;
+
+    static {
+        final Map<String, BindingEnum> bindingEnums = new HashMap<>();
+        for (final BindingEnum bindingEnum : BindingEnum.values()) {
+            bindingEnums.put(bindingEnum.name(), bindingEnum);
+            bindingEnums.put(bindingEnum.name().toLowerCase(Locale.ENGLISH), bindingEnum);
+        }
+        BINDING_ENUMS = Collections.unmodifiableMap(bindingEnums);
+    }
+
+    // Resolved once per annotation type, including the types which are no bindings, e.g. FunctionName
+    private static final ClassValue<AnnotationBinding> ANNOTATION_BINDINGS = new ClassValue<AnnotationBinding>() {
+        @Override
+        protected AnnotationBinding computeValue(final Class<?> annotationType) {
+            return new AnnotationBinding(getBindingEnum(annotationType.getSimpleName()),
+                    annotationType.getDeclaredAnnotation(CustomBinding.class));
+        }
+    };
+
     public static Binding getBinding(final Annotation annotation) {
-        final BindingEnum annotationEnum = Arrays.stream(BindingEnum.values())
-            .filter(bindingEnum -> bindingEnum.name().toLowerCase(Locale.ENGLISH)
-                .equals(annotation.annotationType().getSimpleName().toLowerCase(Locale.ENGLISH)))
-            .findFirst().orElse(null);
-        return annotationEnum == null ? getUserDefinedBinding(annotation) : new Binding(annotationEnum, annotation);
+        final AnnotationBinding annotationBinding = ANNOTATION_BINDINGS.get(annotation.annotationType());
+        return annotationBinding.bindingEnum == null ? getUserDefinedBinding(annotation) :
+                new Binding(annotationBinding.bindingEnum, annotation);
+    }
+
+    /**
+     * @param annotationSimpleName simple name of a binding annotation type
+     * @return binding matching the annotation, null for annotations which are not built-in bindings
+     */
+    public static BindingEnum getBindingEnum(final String annotationSimpleName) {
+        final BindingEnum bindingEnum = BINDING_ENUMS.get(annotationSimpleName);
+        return bindingEnum != null ? bindingEnum :
+                BINDING_ENUMS.get(annotationSimpleName.toLowerCase(Locale.ENGLISH));
     }
 
     public static Binding getUserDefinedBinding(final Annotation annotation) {
-        final CustomBinding customBindingAnnotation = annotation.annotationType()
-            .getDeclaredAnnotation(com.microsoft.azure.functions.annotation.CustomBinding.class);
+        final CustomBinding customBindingAnnotation =
+                ANNOTATION_BINDINGS.get(annotation.annotationType()).customBinding;
         return customBindingAnnotation == null ? null : new ExtendedCustomBinding(BindingEnum.ExtendedCustomBinding,
                 customBindingAnnotation, annotation);
     }
@@ -29,4 +59,17 @@ public class BindingFactory {
         result.setName(HTTP_OUTPUT_DEFAULT_NAME);
         return result;
     }
+
+    /**
+     * Built-in binding or CustomBinding meta-annotation of an annotation type; neither for other annotations.
+     */
+    private static class AnnotationBinding {
+        private final BindingEnum bindingEnum;
+        private final CustomBinding customBinding;
+
+        AnnotationBinding(final BindingEnum bindingEnum, final CustomBinding customBinding) {
+            this.bindingEnum = bindingEnum;
+            this.customBinding = customBinding;
+        }
+    }
 }
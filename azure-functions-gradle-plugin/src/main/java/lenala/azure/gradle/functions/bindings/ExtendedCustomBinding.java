@@ -3,16 +3,38 @@ package lenala.azure.gradle.functions.bindings;
 import com.microsoft.azure.functions.annotation.CustomBinding;
 
 import java.lang.annotation.Annotation;
+import java.util.Map;
 
 public class ExtendedCustomBinding extends Binding {
 
-    private CustomBinding customBindingAnnotation;
+    private String customName;
+
+    private String customDirection;
+
+    private String customType;
 
     public ExtendedCustomBinding(BindingEnum bindingEnum,
                                  CustomBinding customBindingAnnotation,
                                  Annotation annotation) {
         super(bindingEnum, annotation);
-        this.customBindingAnnotation = customBindingAnnotation;
+        this.customName = customBindingAnnotation.name();
+        this.customDirection = customBindingAnnotation.direction();
+        this.customType = customBindingAnnotation.type();
+    }
+
+    /**
+     * Create a custom binding from raw annotation values.
+     *
+     * @param customBindingValues values of the {@link CustomBinding} meta-annotation
+     */
+    public ExtendedCustomBinding(BindingEnum bindingEnum,
+                                 Map<String, Object> customBindingValues,
+                                 Map<String, Object> attributeValues,
+                                 Map<String, Object> defaultValues) {
+        super(bindingEnum, attributeValues, defaultValues);
+        this.customName = (String) customBindingValues.get("name");
+        this.customDirection = (String) customBindingValues.get("direction");
+        this.customType = (String) customBindingValues.get("type");
     }
 
     @Override
@@ -21,7 +43,7 @@ public class ExtendedCustomBinding extends Binding {
         if (name != null) {
             return name;
         }
-        return customBindingAnnotation.name();
+        return customName;
     }
 
     @Override
@@ -29,7 +51,7 @@ public class ExtendedCustomBinding extends Binding {
         if (this.direction != null) {
             return direction.toString();
         }
-        return customBindingAnnotation.direction();
+        return customDirection;
     }
 
     @Override
@@ -37,6 +59,6 @@ public class ExtendedCustomBinding extends Binding {
         if (type != null) {
             return type;
         }
-        return customBindingAnnotation.type();
+        return customType;
     }
 }
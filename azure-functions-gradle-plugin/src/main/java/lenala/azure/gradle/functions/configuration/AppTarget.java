@@ -0,0 +1,58 @@
+package lenala.azure.gradle.functions.configuration;
+
+/**
+ * One of several Function Apps the same artifact is deployed to. Settings left out are taken from the single app
+ * configuration.
+ */
+public class AppTarget {
+    private String appName;
+    private String resourceGroup;
+    private String region;
+
+    public AppTarget() {
+    }
+
+    public AppTarget(final String appName, final String resourceGroup, final String region) {
+        this.appName = appName;
+        this.resourceGroup = resourceGroup;
+        this.region = region;
+    }
+
+    /**
+     * @return a new target with the settings left out of this one taken from the defaults
+     */
+    public AppTarget withDefaults(final AppTarget defaults) {
+        return new AppTarget(appName,
+                resourceGroup == null ? defaults.getResourceGroup() : resourceGroup,
+                region == null ? defaults.getRegion() : region);
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public void setAppName(String appName) {
+        this.appName = appName;
+    }
+
+    public void setResourceGroup(String resourceGroup) {
+        this.resourceGroup = resourceGroup;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    @Override
+    public String toString() {
+        return resourceGroup == null ? appName : resourceGroup + "/" + appName;
+    }
+}
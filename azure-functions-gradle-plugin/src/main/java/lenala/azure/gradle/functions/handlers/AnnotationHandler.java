@@ -3,16 +3,31 @@ package lenala.azure.gradle.functions.handlers;
 
 import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
 
-import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-public interface AnnotationHandler {
-    Set<Method> findFunctions(final List<URL> urls);
+/**
+ * Finds Azure Function entry points and generates their configurations.
+ *
+ * @param <T> representation of a function method, e.g. a reflected {@link java.lang.reflect.Method}
+ */
+public interface AnnotationHandler<T> extends AutoCloseable {
+    /**
+     * @param urls          class directories and jars searched for functions
+     * @param classpathUrls additional class path needed to resolve the function classes, not searched
+     */
+    Set<T> findFunctions(final List<URL> urls, final List<URL> classpathUrls) throws Exception;
 
-    Map<String, FunctionConfiguration> generateConfigurations(final Set<Method> methods) throws Exception;
+    Map<String, FunctionConfiguration> generateConfigurations(final Set<T> methods) throws Exception;
 
-    FunctionConfiguration generateConfiguration(final Method method) throws Exception;
+    FunctionConfiguration generateConfiguration(final T method) throws Exception;
+
+    /**
+     * Release the class path searched, once the configurations are generated.
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,143 @@
+package lenala.azure.gradle.functions.handlers;
+
+import lenala.azure.gradle.functions.bindings.Binding;
+import lenala.azure.gradle.functions.bindings.BindingEnum;
+import lenala.azure.gradle.functions.bindings.BindingFactory;
+import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
+import org.apache.commons.lang3.StringUtils;
+import org.gradle.api.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public abstract class AnnotationHandlerBase<T> implements AnnotationHandler<T> {
+    protected Logger logger;
+    private int parallelism = 1;
+
+    protected AnnotationHandlerBase(final Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @param parallelism maximum number of threads generating configurations, usually Gradle's max worker count
+     */
+    public AnnotationHandlerBase<T> withParallelism(final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Function names are validated before any configuration is generated. Configurations are generated in
+     * parallel, and returned sorted by function name whatever order they were generated in.
+     */
+    @Override
+    public Map<String, FunctionConfiguration> generateConfigurations(final Set<T> methods) throws Exception {
+        final Map<String, T> functions = new TreeMap<>();
+        final Map<String, String> lowerCaseNames = new HashMap<>();
+        for (final T method : methods) {
+            final String functionName = getFunctionName(method);
+            validateFunctionName(lowerCaseNames, functionName);
+            functions.put(functionName, method);
+        }
+
+        final Map<String, FunctionConfiguration> configMap = new TreeMap<>();
+        if (parallelism == 1 || functions.size() < 2) {
+            for (final Map.Entry<String, T> function : functions.entrySet()) {
+                logger.quiet("Starting processing function : " + function.getKey());
+                configMap.put(function.getKey(), generateConfiguration(function.getValue()));
+            }
+            return configMap;
+        }
+
+        final List<Callable<FunctionConfiguration>> tasks = new ArrayList<>();
+        for (final Map.Entry<String, T> function : functions.entrySet()) {
+            tasks.add(() -> {
+                logger.quiet("Starting processing function : " + function.getKey());
+                return generateConfiguration(function.getValue());
+            });
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+        try {
+            final List<Future<FunctionConfiguration>> results = executor.invokeAll(tasks);
+            int i = 0;
+            for (final String functionName : functions.keySet()) {
+                configMap.put(functionName, getResult(results.get(i++)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return configMap;
+    }
+
+    private static FunctionConfiguration getResult(final Future<FunctionConfiguration> result) throws Exception {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return value of the {@link com.microsoft.azure.functions.annotation.FunctionName} annotation of the method
+     */
+    protected abstract String getFunctionName(final T method);
+
+    /**
+     * @param lowerCaseNames names of the functions validated so far, keyed by their lower case form
+     */
+    private void validateFunctionName(final Map<String, String> lowerCaseNames, final String functionName)
+            throws Exception {
+        if (StringUtils.isEmpty(functionName)) {
+            throw new Exception("Azure Function name cannot be empty.");
+        }
+        if (lowerCaseNames.putIfAbsent(functionName.toLowerCase(Locale.ROOT), functionName) != null) {
+            throw new Exception("Found duplicate Azure Function: " + functionName);
+        }
+    }
+
+    protected void addBinding(final List<Binding> bindings, final Binding binding) {
+        if (binding != null) {
+            logger.quiet("Adding binding: " + binding.toString());
+            bindings.add(binding);
+        }
+    }
+
+    protected void addHttpOutputBinding(final List<Binding> bindings) {
+        if (bindings.stream().anyMatch(b -> b.getBindingEnum() == BindingEnum.HttpTrigger) &&
+                bindings.stream().noneMatch(b -> b.getName().equalsIgnoreCase("$return"))) {
+            bindings.add(BindingFactory.getHTTPOutBinding());
+        }
+    }
+
+    /**
+     * Replace empty connection strings of storage bindings with the value of the StorageAccount annotation.
+     *
+     * @param connectionString value of the StorageAccount annotation, null if the method is not annotated
+     */
+    protected void patchStorageBinding(final String connectionString, final List<Binding> bindings) {
+        if (connectionString != null) {
+            logger.quiet("StorageAccount annotation found.");
+            bindings.stream().filter(binding -> binding.getBindingEnum().isStorage())
+                    .filter(binding -> StringUtils.isEmpty((String) binding.getAttribute("connection")))
+                    .forEach(binding -> binding.setAttribute("connection", connectionString));
+        } else {
+            logger.quiet("No StorageAccount annotation found.");
+        }
+    }
+}
@@ -2,12 +2,11 @@ package lenala.azure.gradle.functions.handlers;
 
 import com.microsoft.azure.functions.annotation.StorageAccount;
 import lenala.azure.gradle.functions.bindings.Binding;
-import lenala.azure.gradle.functions.bindings.BindingEnum;
 import lenala.azure.gradle.functions.bindings.BindingFactory;
 import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
+import lenala.azure.gradle.functions.helpers.FunctionIndex;
 import com.microsoft.azure.functions.annotation.FunctionName;
 
-import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.logging.Logger;
 import org.reflections.Reflections;
 import org.reflections.scanners.MethodAnnotationsScanner;
@@ -20,7 +19,8 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -28,48 +28,63 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-public class AnnotationHandlerImpl implements AnnotationHandler {
-    private Logger logger;
+public class AnnotationHandlerImpl extends AnnotationHandlerBase<Method> {
+    private FunctionIndex functionIndex;
 
     public AnnotationHandlerImpl(final Logger logger) {
-        this.logger = logger;
+        super(logger);
+    }
+
+    public AnnotationHandlerImpl(final Logger logger, final FunctionIndex functionIndex) {
+        super(logger);
+        this.functionIndex = functionIndex;
     }
 
     @Override
-    public Set<Method> findFunctions(final List<URL> urls) {
+    public Set<Method> findFunctions(final List<URL> urls, final List<URL> classpathUrls) throws Exception {
+        final ClassLoader classLoader = getClassLoader(urls, classpathUrls);
+        return functionIndex == null ?
+                findFunctionsWithReflections(urls, classLoader) :
+                findFunctionsWithIndex(urls, classLoader);
+    }
+
+    private Set<Method> findFunctionsWithReflections(final List<URL> urls, final ClassLoader classLoader) {
         return new Reflections(
                 new ConfigurationBuilder()
                         .addUrls(urls)
                         .setScanners(new MethodAnnotationsScanner())
-                        .addClassLoader(getClassLoader(urls)))
+                        .addClassLoader(classLoader))
                 .getMethodsAnnotatedWith(FunctionName.class);
     }
 
-    private ClassLoader getClassLoader(final List<URL> urlList) {
-        final URL[] urlArray = urlList.toArray(new URL[urlList.size()]);
-        return new URLClassLoader(urlArray, this.getClass().getClassLoader());
+    /**
+     * Only classes recorded in the index as declaring functions are loaded.
+     */
+    private Set<Method> findFunctionsWithIndex(final List<URL> urls, final ClassLoader classLoader)
+            throws Exception {
+        final Map<String, List<String>> functionClasses = functionIndex.findFunctionClasses(urls);
+        final Set<Method> methods = new HashSet<>();
+        for (final Map.Entry<String, List<String>> functionClass : functionClasses.entrySet()) {
+            final Class<?> clazz = Class.forName(functionClass.getKey(), false, classLoader);
+            for (final Method method : clazz.getDeclaredMethods()) {
+                if (functionClass.getValue().contains(method.getName()) &&
+                        method.isAnnotationPresent(FunctionName.class)) {
+                    methods.add(method);
+                }
+            }
+        }
+        return methods;
     }
 
-    @Override
-    public Map<String, FunctionConfiguration> generateConfigurations(final Set<Method> methods) throws Exception {
-        final Map<String, FunctionConfiguration> configMap = new HashMap<>();
-        for (final Method method : methods) {
-            final FunctionName functionAnnotation = method.getAnnotation(FunctionName.class);
-            final String functionName = functionAnnotation.value();
-            validateFunctionName(configMap.keySet(), functionName);
-            logger.quiet("Starting processing function : " + functionName);
-            configMap.put(functionName, generateConfiguration(method));
-        }
-        return configMap;
+    private ClassLoader getClassLoader(final List<URL> urls, final List<URL> classpathUrls) {
+        final Set<URL> urlSet = new LinkedHashSet<>(urls);
+        urlSet.addAll(classpathUrls);
+        return new URLClassLoader(urlSet.toArray(new URL[0]), this.getClass().getClassLoader());
     }
 
-    private void validateFunctionName(final Set<String> nameSet, final String functionName) throws Exception {
-        if (StringUtils.isEmpty(functionName)) {
-            throw new Exception("Azure Function name cannot be empty.");
-        }
-        if (nameSet.stream().anyMatch(n -> StringUtils.equalsIgnoreCase(n, functionName))) {
-            throw new Exception("Found duplicate Azure Function: " + functionName);
-        }
+    @Override
+    protected String getFunctionName(final Method method) {
+        return method.getAnnotation(FunctionName.class).value();
     }
 
     @Override
@@ -97,10 +112,7 @@ public class AnnotationHandlerImpl implements AnnotationHandler {
         if (!method.getReturnType().equals(Void.TYPE)) {
             bindings.addAll(parseAnnotations(method::getAnnotations, this::parseMethodAnnotation));
 
-            if (bindings.stream().anyMatch(b -> b.getBindingEnum() == BindingEnum.HttpTrigger) &&
-                    bindings.stream().noneMatch(b -> b.getName().equalsIgnoreCase("$return"))) {
-                bindings.add(BindingFactory.getHTTPOutBinding());
-            }
+            addHttpOutputBinding(bindings);
         }
     }
 
@@ -109,11 +121,7 @@ public class AnnotationHandlerImpl implements AnnotationHandler {
         final List<Binding> bindings = new ArrayList<>();
 
         for (final Annotation annotation : annotationProvider.get()) {
-            final Binding binding = annotationParser.apply(annotation);
-            if (binding != null) {
-                logger.quiet("Adding binding: " + binding.toString());
-                bindings.add(binding);
-            }
+            addBinding(bindings, annotationParser.apply(annotation));
         }
         return bindings;
     }
@@ -135,15 +143,7 @@ public class AnnotationHandlerImpl implements AnnotationHandler {
                 .filter(annotation -> annotation instanceof StorageAccount)
                 .findFirst();
 
-        if (storageAccount.isPresent()) {
-            logger.quiet("StorageAccount annotation found.");
-            final String connectionString = ((StorageAccount) storageAccount.get()).value();
-            // Replace empty connection string
-            bindings.stream().filter(binding -> binding.getBindingEnum().isStorage())
-                    .filter(binding -> StringUtils.isEmpty((String) binding.getAttribute("connection")))
-                    .forEach(binding -> binding.setAttribute("connection", connectionString));
-        } else {
-            logger.quiet("No StorageAccount annotation found.");
-        }
+        patchStorageBinding(storageAccount.map(annotation -> ((StorageAccount) annotation).value()).orElse(null),
+                bindings);
     }
 }
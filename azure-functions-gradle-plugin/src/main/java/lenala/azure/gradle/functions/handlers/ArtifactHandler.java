@@ -1,5 +1,21 @@
 package lenala.azure.gradle.functions.handlers;
 
+import com.microsoft.azure.management.appservice.FunctionApp;
+
 public interface ArtifactHandler {
+    /**
+     * Start the work which does not need the Function App to be created or updated first.
+     *
+     * @param existingApp Function App before it is updated, or null when it is about to be created
+     */
+    default void prepare(final FunctionApp existingApp) throws Exception {
+    }
+
+    /**
+     * Stop and clean up the work started by {@link #prepare(FunctionApp)}, when the deployment fails before publishing.
+     */
+    default void abort() {
+    }
+
     void publish() throws Exception;
 }
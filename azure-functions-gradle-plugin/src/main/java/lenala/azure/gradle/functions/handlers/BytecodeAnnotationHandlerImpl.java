@@ -0,0 +1,276 @@
+package lenala.azure.gradle.functions.handlers;
+
+import com.microsoft.azure.functions.annotation.CustomBinding;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.StorageAccount;
+import javassist.ClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import javassist.bytecode.AccessFlag;
+import javassist.bytecode.AnnotationDefaultAttribute;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.BooleanMemberValue;
+import javassist.bytecode.annotation.ByteMemberValue;
+import javassist.bytecode.annotation.CharMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.DoubleMemberValue;
+import javassist.bytecode.annotation.EnumMemberValue;
+import javassist.bytecode.annotation.FloatMemberValue;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.LongMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.ShortMemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+import lenala.azure.gradle.functions.bindings.Binding;
+import lenala.azure.gradle.functions.bindings.BindingEnum;
+import lenala.azure.gradle.functions.bindings.BindingFactory;
+import lenala.azure.gradle.functions.bindings.ExtendedCustomBinding;
+import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
+import lenala.azure.gradle.functions.helpers.FunctionIndex;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation handler working on class files only.
+ * Neither the function classes nor the binding annotations are loaded; bindings are generated from the raw
+ * annotation values, with default values read from the class files of the annotation types.
+ */
+public class BytecodeAnnotationHandlerImpl extends AnnotationHandlerBase<ClassFileMethod> {
+    private static final String FUNCTION_NAME = FunctionName.class.getName();
+    private static final String STORAGE_ACCOUNT = StorageAccount.class.getName();
+    private static final String CUSTOM_BINDING = CustomBinding.class.getName();
+    private static final String ANNOTATION_TYPE_NOT_FOUND = "Annotation type %s not found, skip it.";
+
+    private FunctionIndex functionIndex;
+    private ClassPool classPool;
+    private final List<ClassPath> classPaths = new ArrayList<>();
+    private final Map<String, AnnotationType> annotationTypes = new HashMap<>();
+
+    public BytecodeAnnotationHandlerImpl(final Logger logger, final FunctionIndex functionIndex) {
+        super(logger);
+        this.functionIndex = functionIndex;
+    }
+
+    @Override
+    public Set<ClassFileMethod> findFunctions(final List<URL> urls, final List<URL> classpathUrls)
+            throws Exception {
+        final Set<URL> classPoolUrls = new LinkedHashSet<>(urls);
+        classPoolUrls.addAll(classpathUrls);
+        close();
+        createClassPool(classPoolUrls);
+        final Map<String, List<String>> functionClasses = functionIndex.findFunctionClasses(urls);
+        final Set<ClassFileMethod> methods = new HashSet<>();
+        for (final String className : functionClasses.keySet()) {
+            final ClassFile classFile = classPool.get(className).getClassFile2();
+            for (final Object method : classFile.getMethods()) {
+                final ClassFileMethod classFileMethod = new ClassFileMethod(className, (MethodInfo) method);
+                if (classFileMethod.getAnnotation(FUNCTION_NAME) != null) {
+                    methods.add(classFileMethod);
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Class files are looked up in the plugin class path first, same as the parent-first class loader used by
+     * {@link AnnotationHandlerImpl}, so the Azure Functions annotations are always resolved from the plugin.
+     * The class path entries keep the jars open until {@link #close()}.
+     */
+    private void createClassPool(final Set<URL> urls) throws NotFoundException, URISyntaxException {
+        classPool = new ClassPool(false);
+        classPaths.add(classPool.appendClassPath(new LoaderClassPath(this.getClass().getClassLoader())));
+        for (final URL url : urls) {
+            final File file = Paths.get(url.toURI()).toFile();
+            if (file.exists()) {
+                classPaths.add(classPool.appendClassPath(file.getAbsolutePath()));
+            }
+        }
+    }
+
+    /**
+     * Close the jars of the class pool. Removing an entry closes it.
+     */
+    @Override
+    public void close() {
+        for (final ClassPath classPath : classPaths) {
+            classPool.removeClassPath(classPath);
+        }
+        classPaths.clear();
+    }
+
+    @Override
+    protected String getFunctionName(final ClassFileMethod method) {
+        final MemberValue value = method.getAnnotation(FUNCTION_NAME).getMemberValue("value");
+        return value == null ? null : (String) toValue(value);
+    }
+
+    @Override
+    public FunctionConfiguration generateConfiguration(final ClassFileMethod method) {
+        final FunctionConfiguration config = new FunctionConfiguration();
+        final List<Binding> bindings = config.getBindings();
+
+        for (final Annotation[] parameterAnnotations : method.getParameterAnnotations()) {
+            for (final Annotation annotation : parameterAnnotations) {
+                addBinding(bindings, parseAnnotation(annotation));
+            }
+        }
+
+        if (!method.isVoid()) {
+            for (final Annotation annotation : method.getAnnotations()) {
+                final Binding binding = parseAnnotation(annotation);
+                if (binding != null) {
+                    binding.setName("$return");
+                }
+                addBinding(bindings, binding);
+            }
+
+            addHttpOutputBinding(bindings);
+        }
+
+        final Annotation storageAccount = method.getAnnotation(STORAGE_ACCOUNT);
+        patchStorageBinding(storageAccount == null ? null : (String) getValues(storageAccount).get("value"),
+                bindings);
+
+        config.setEntryPoint(method.getCanonicalClassName() + "." + method.getName());
+        return config;
+    }
+
+    private Binding parseAnnotation(final Annotation annotation) {
+        final AnnotationType annotationType = getAnnotationType(annotation.getTypeName());
+        if (annotationType == null) {
+            return null;
+        }
+        if (annotationType.bindingEnum != null) {
+            return new Binding(annotationType.bindingEnum, getValues(annotation), annotationType.defaultValues);
+        }
+        if (annotationType.customBinding != null) {
+            return new ExtendedCustomBinding(BindingEnum.ExtendedCustomBinding,
+                    getValues(annotationType.customBinding), getValues(annotation), annotationType.defaultValues);
+        }
+        return null;
+    }
+
+    /**
+     * @return values of all attributes declared by the annotation type, falling back to the defaults
+     */
+    private Map<String, Object> getValues(final Annotation annotation) {
+        final AnnotationType annotationType = getAnnotationType(annotation.getTypeName());
+        final Map<String, Object> values = new LinkedHashMap<>();
+        if (annotationType != null) {
+            for (final Map.Entry<String, MemberValue> attribute : annotationType.attributes.entrySet()) {
+                final MemberValue value = annotation.getMemberValue(attribute.getKey());
+                values.put(attribute.getKey(), toValue(value == null ? attribute.getValue() : value));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Synchronized, as configurations may be generated on several threads.
+     */
+    private synchronized AnnotationType getAnnotationType(final String typeName) {
+        if (!annotationTypes.containsKey(typeName)) {
+            final CtClass ctClass = classPool.getOrNull(typeName);
+            if (ctClass == null) {
+                logger.debug(String.format(ANNOTATION_TYPE_NOT_FOUND, typeName));
+            }
+            annotationTypes.put(typeName, ctClass == null ? null : new AnnotationType(ctClass.getClassFile2()));
+        }
+        return annotationTypes.get(typeName);
+    }
+
+    /**
+     * Convert an annotation value to the form serialized to function.json. Enum constants become their names,
+     * which is how they are serialized when read through reflection.
+     */
+    private static Object toValue(final MemberValue value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof StringMemberValue) {
+            return ((StringMemberValue) value).getValue();
+        } else if (value instanceof EnumMemberValue) {
+            return ((EnumMemberValue) value).getValue();
+        } else if (value instanceof BooleanMemberValue) {
+            return ((BooleanMemberValue) value).getValue();
+        } else if (value instanceof IntegerMemberValue) {
+            return ((IntegerMemberValue) value).getValue();
+        } else if (value instanceof LongMemberValue) {
+            return ((LongMemberValue) value).getValue();
+        } else if (value instanceof ShortMemberValue) {
+            return ((ShortMemberValue) value).getValue();
+        } else if (value instanceof ByteMemberValue) {
+            return ((ByteMemberValue) value).getValue();
+        } else if (value instanceof CharMemberValue) {
+            return ((CharMemberValue) value).getValue();
+        } else if (value instanceof FloatMemberValue) {
+            return ((FloatMemberValue) value).getValue();
+        } else if (value instanceof DoubleMemberValue) {
+            return ((DoubleMemberValue) value).getValue();
+        } else if (value instanceof ClassMemberValue) {
+            return ((ClassMemberValue) value).getValue();
+        } else if (value instanceof ArrayMemberValue) {
+            final MemberValue[] elements = ((ArrayMemberValue) value).getValue();
+            final Object[] result = new Object[elements == null ? 0 : elements.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = toValue(elements[i]);
+            }
+            return result;
+        } else if (value instanceof AnnotationMemberValue) {
+            return ((AnnotationMemberValue) value).getValue().toString();
+        }
+        return value.toString();
+    }
+
+    /**
+     * Built-in binding, attributes, default values and CustomBinding meta-annotation of an annotation type, read from
+     * its class file.
+     */
+    private static class AnnotationType {
+        private final BindingEnum bindingEnum;
+        private final Map<String, MemberValue> attributes = new LinkedHashMap<>();
+        private final Map<String, Object> defaultValues = new HashMap<>();
+        private final Annotation customBinding;
+
+        AnnotationType(final ClassFile classFile) {
+            final String name = classFile.getName();
+            this.bindingEnum = BindingFactory.getBindingEnum(
+                    name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1));
+
+            for (final Object method : classFile.getMethods()) {
+                final MethodInfo methodInfo = (MethodInfo) method;
+                if ((methodInfo.getAccessFlags() & AccessFlag.STATIC) != 0) {
+                    continue;
+                }
+                final AnnotationDefaultAttribute defaultAttribute =
+                        (AnnotationDefaultAttribute) methodInfo.getAttribute(AnnotationDefaultAttribute.tag);
+                final MemberValue defaultValue = defaultAttribute == null ? null : defaultAttribute.getDefaultValue();
+                attributes.put(methodInfo.getName(), defaultValue);
+                defaultValues.put(methodInfo.getName(), toValue(defaultValue));
+            }
+
+            final AnnotationsAttribute annotations =
+                    (AnnotationsAttribute) classFile.getAttribute(AnnotationsAttribute.visibleTag);
+            this.customBinding = annotations == null ? null : annotations.getAnnotation(CUSTOM_BINDING);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package lenala.azure.gradle.functions.handlers;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.MethodInfo;
+import javassist.bytecode.ParameterAnnotationsAttribute;
+import javassist.bytecode.annotation.Annotation;
+
+import java.util.Objects;
+
+/**
+ * Method read from a class file, without loading its declaring class.
+ */
+public class ClassFileMethod {
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final String className;
+    private final MethodInfo methodInfo;
+
+    public ClassFileMethod(final String className, final MethodInfo methodInfo) {
+        this.className = className;
+        this.methodInfo = methodInfo;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getName() {
+        return methodInfo.getName();
+    }
+
+    /**
+     * @return class name in the same form as {@link Class#getCanonicalName()} for top level and member classes
+     */
+    public String getCanonicalClassName() {
+        return className.replace('$', '.');
+    }
+
+    public boolean isVoid() {
+        return methodInfo.getDescriptor().endsWith(")V");
+    }
+
+    public Annotation getAnnotation(final String annotationType) {
+        final AnnotationsAttribute attribute =
+                (AnnotationsAttribute) methodInfo.getAttribute(AnnotationsAttribute.visibleTag);
+        return attribute == null ? null : attribute.getAnnotation(annotationType);
+    }
+
+    public Annotation[] getAnnotations() {
+        final AnnotationsAttribute attribute =
+                (AnnotationsAttribute) methodInfo.getAttribute(AnnotationsAttribute.visibleTag);
+        return attribute == null ? NO_ANNOTATIONS : attribute.getAnnotations();
+    }
+
+    public Annotation[][] getParameterAnnotations() {
+        final ParameterAnnotationsAttribute attribute =
+                (ParameterAnnotationsAttribute) methodInfo.getAttribute(ParameterAnnotationsAttribute.visibleTag);
+        return attribute == null ? new Annotation[0][] : attribute.getAnnotations();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ClassFileMethod that = (ClassFileMethod) o;
+        return className.equals(that.className) &&
+                methodInfo.getName().equals(that.methodInfo.getName()) &&
+                methodInfo.getDescriptor().equals(that.methodInfo.getDescriptor());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(className, methodInfo.getName(), methodInfo.getDescriptor());
+    }
+
+    @Override
+    public String toString() {
+        return className + "." + methodInfo.getName() + methodInfo.getDescriptor();
+    }
+}
@@ -1,39 +1,50 @@
 package lenala.azure.gradle.functions.handlers;
 
-import lenala.azure.gradle.functions.FunctionsTask;
+import lenala.azure.gradle.functions.DeployTask;
+import lenala.azure.gradle.functions.configuration.AppTarget;
 import lenala.azure.gradle.functions.helpers.FTPUploader;
+import lenala.azure.gradle.functions.helpers.PhaseMetrics;
 import com.microsoft.azure.management.appservice.FunctionApp;
 import com.microsoft.azure.management.appservice.PublishingProfile;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
 
 public class FTPArtifactHandlerImpl implements ArtifactHandler {
     private static final String DEFAULT_FUNCTION_ROOT = "/site/wwwroot";
     private static final int DEFAULT_MAX_RETRY_TIMES = 3;
 
-    private FunctionsTask functionsTask;
+    private DeployTask functionsTask;
+    private AppTarget target;
 
-    public FTPArtifactHandlerImpl(final FunctionsTask functionsTask) {
+    public FTPArtifactHandlerImpl(final DeployTask functionsTask, final AppTarget target) {
         this.functionsTask = functionsTask;
+        this.target = target;
     }
 
     @Override
     public void publish() throws Exception {
         final FTPUploader uploader = getUploader();
-        final FunctionApp app = functionsTask.getFunctionApp();
+        final FunctionApp app = functionsTask.getFunctionApp(target);
         final PublishingProfile profile = app.getPublishingProfile();
         final String serverUrl = profile.ftpUrl().split("/", 2)[0];
 
-        uploader.uploadDirectoryWithRetries(
-                serverUrl,
-                profile.ftpUsername(),
-                profile.ftpPassword(),
-                functionsTask.getDeploymentStageDirectory(),
-                DEFAULT_FUNCTION_ROOT,
-                DEFAULT_MAX_RETRY_TIMES);
-
-        app.syncTriggers();
+        try (PhaseMetrics.Phase phase = functionsTask.getMetrics().start("upload", target.getAppName())) {
+            uploader.uploadDirectoryWithRetries(
+                    serverUrl,
+                    profile.ftpUsername(),
+                    profile.ftpPassword(),
+                    functionsTask.getDeploymentStageDirectory(),
+                    DEFAULT_FUNCTION_ROOT,
+                    DEFAULT_MAX_RETRY_TIMES);
+            phase.addBytes(FileUtils.sizeOfDirectory(new File(functionsTask.getDeploymentStageDirectory())));
+        }
+
+        functionsTask.getMetrics().run("sync triggers", target.getAppName(), app::syncTriggers);
     }
 
     protected FTPUploader getUploader() {
-        return new FTPUploader(functionsTask.getLogger());
+        final FTPUploader uploader = new FTPUploader(functionsTask.getLogger());
+        return functionsTask.isFtpSync() ? uploader.withSync(functionsTask.isFtpDeleteStale()) : uploader;
     }
 }
@@ -1,16 +1,33 @@
 package lenala.azure.gradle.functions.handlers;
 
 import lenala.azure.gradle.functions.AzureStorageHelper;
-import lenala.azure.gradle.functions.FunctionsTask;
+import lenala.azure.gradle.functions.DeployTask;
+import lenala.azure.gradle.functions.configuration.AppTarget;
+import lenala.azure.gradle.functions.helpers.BlockBlobUploader;
+import lenala.azure.gradle.functions.helpers.PhaseMetrics;
+import lenala.azure.gradle.functions.helpers.ZipPackager;
 import com.microsoft.azure.management.appservice.AppSetting;
 import com.microsoft.azure.management.appservice.FunctionApp;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.blob.CloudBlob;
 import org.apache.commons.lang3.StringUtils;
-import org.zeroturnaround.zip.ZipUtil;
 
 import java.io.File;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static lenala.azure.gradle.functions.AzureFunctionsPlugin.AZURE_FUNCTIONS;
 
 public class MSDeployArtifactHandlerImpl implements ArtifactHandler {
     private static final String DEPLOYMENT_PACKAGE_CONTAINER = "java-functions-deployment-packages";
@@ -20,39 +37,183 @@ public class MSDeployArtifactHandlerImpl implements ArtifactHandler {
     private static final String STAGE_DIR_NOT_FOUND = "Function App stage directory '%s' not found. " +
             "Please run package task first.";
     private static final String LOCAL_SETTINGS_FILE = "local.settings.json";
-    private static final String REMOVE_LOCAL_SETTINGS = "Remove local.settings.json from ZIP package.";
+    private static final String EXCLUDE_LOCAL_SETTINGS = "Exclude local.settings.json from ZIP package.";
     private static final String INTERNAL_STORAGE_KEY = "AzureWebJobsStorage";
     private static final String INTERNAL_STORAGE_NOT_FOUND = "Application setting 'AzureWebJobsStorage' not found.";
     private static final String INTERNAL_STORAGE_CONNECTION_STRING = "Function App Internal Storage Connection String: ";
     private static final String UPLOAD_PACKAGE_START = "Step 2 of 4: Uploading ZIP package to Azure Storage...";
+    private static final String STREAM_PACKAGE_START = "Step 1-2 of 4: Streaming ZIP package to Azure Storage...";
     private static final String UPLOAD_PACKAGE_DONE = "Successfully uploaded ZIP package to ";
     private static final String DEPLOY_PACKAGE_START = "Step 3 of 4: Deploying Function App with package...";
     private static final String DEPLOY_PACKAGE_DONE = "Successfully deployed Function App with package.";
     private static final String DELETE_PACKAGE_START = "Step 4 of 4: Deleting deployment package from Azure Storage...";
     private static final String DELETE_PACKAGE_DONE = "Successfully deleted deployment package ";
     private static final String DELETE_PACKAGE_FAIL = "Failed to delete deployment package ";
+    private static final String REUSE_PACKAGE = "Step 2 of 4: Identical ZIP package already in Azure Storage, skip upload: ";
+    private static final String PRUNE_PACKAGES_START = "Step 4 of 4: Keeping the %d most recently deployed packages in Azure Storage...";
+    private static final String PRUNE_PACKAGES_FAIL = "Failed to delete old deployment packages: ";
+    private static final String ABORT_PACKAGE_FAIL = "Package upload of the failed deployment did not complete: ";
+    private static final String LAST_DEPLOYED_KEY = "lastdeployed";
+    private static final long PACKAGE_READ_MINUTES = 30;
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}\\.zip");
 
-    private FunctionsTask functionsTask;
+    private DeployTask functionsTask;
+    private AppTarget target;
+    private Future<StagedPackage> stagedPackage;
 
-    public MSDeployArtifactHandlerImpl(final FunctionsTask functionsTask) {
+    public MSDeployArtifactHandlerImpl(final DeployTask functionsTask, final AppTarget target) {
         this.functionsTask = functionsTask;
+        this.target = target;
+    }
+
+    /**
+     * The package is built, and uploaded to the storage account of an existing Function App, while the Function App
+     * is created or updated. Otherwise the upload waits for the Function App.
+     */
+    @Override
+    public void prepare(final FunctionApp existingApp) {
+        final StagedPackage staged = new StagedPackage(getZipFile(), getBlobName());
+        final FunctionApp storageApp = functionsTask.getAppSettings().containsKey(INTERNAL_STORAGE_KEY) ?
+                null : existingApp;
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        stagedPackage = executor.submit(() -> stagePackage(staged, storageApp));
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for the package upload, so it neither outlives the deployment nor leaves its blob behind.
+     */
+    @Override
+    public void abort() {
+        if (stagedPackage == null) {
+            return;
+        }
+        try {
+            final StagedPackage staged = getResult(stagedPackage);
+            if (staged.onDeployFinish != null) {
+                staged.onDeployFinish.run();
+            }
+        } catch (Exception e) {
+            logDebug(ABORT_PACKAGE_FAIL + e.getMessage());
+        } finally {
+            stagedPackage = null;
+        }
     }
 
     @Override
     public void publish() throws Exception {
-        final File zipPackage = createZipPackage();
+        final StagedPackage staged = stagedPackage == null ?
+                stagePackage(new StagedPackage(getZipFile(), getBlobName()), null) :
+                getResult(stagedPackage);
 
-        final FunctionApp app = functionsTask.getFunctionApp();
+        final FunctionApp app = functionsTask.getFunctionApp(target);
 
         functionsTask.getLogger().quiet("FunctionApp " + app);
 
-        final CloudStorageAccount storageAccount = getCloudStorageAccount(app);
+        if (staged.packageUri == null) {
+            uploadPackage(staged, getCloudStorageAccount(app));
+        }
 
-        final String blobName = getBlobName();
+        // The container is private, the deployment reads the package with a signature of its own
+        final String packageUri = AzureStorageHelper.getBlobReadUri(staged.storageAccount,
+                DEPLOYMENT_PACKAGE_CONTAINER, staged.packageBlobName, PACKAGE_READ_MINUTES);
+        functionsTask.getMetrics().run("deploy", target.getAppName(),
+                () -> deployWithPackageUri(app, packageUri, staged.onDeployFinish));
+    }
 
-        final String packageUri = uploadPackageToAzureStorage(zipPackage, storageAccount, blobName);
+    /**
+     * @param app Function App to upload the package for, or null to only build it
+     */
+    private StagedPackage stagePackage(final StagedPackage staged, final FunctionApp app) throws Exception {
+        staged.zipPackager = getZipPackager();
+        if (functionsTask.isStreamZipPackage() && !functionsTask.isContentAddressedPackage()) {
+            staged.zipFile = null;
+        } else {
+            try (PhaseMetrics.Phase phase = functionsTask.getMetrics().start("zip", target.getAppName())) {
+                createZipPackage(staged.zipPackager, staged.zipFile);
+                phase.addBytes(staged.zipFile.length());
+            }
+        }
+        if (app != null) {
+            uploadPackage(staged, getCloudStorageAccount(app));
+        }
+        return staged;
+    }
+
+    /**
+     * A streamed package is zipped while it is uploaded, so both are measured as one phase.
+     */
+    private void uploadPackage(final StagedPackage staged, final CloudStorageAccount storageAccount)
+            throws Exception {
+        try (PhaseMetrics.Phase phase = functionsTask.getMetrics().start(
+                staged.zipFile == null ? "zip+upload" : "upload", target.getAppName())) {
+            staged.storageAccount = storageAccount;
+            if (functionsTask.isContentAddressedPackage()) {
+                uploadContentAddressed(staged, storageAccount);
+            } else {
+                staged.packageUri = staged.zipFile == null ?
+                        streamPackageToAzureStorage(staged.zipPackager, storageAccount, staged.blobName) :
+                        uploadPackageToAzureStorage(staged.zipFile, storageAccount, staged.blobName);
+                staged.packageBlobName = staged.blobName;
+                staged.onDeployFinish = () -> deletePackageFromAzureStorage(storageAccount, staged.blobName);
+            }
+            if (staged.zipFile != null) {
+                phase.addBytes(staged.zipFile.length());
+            }
+        }
+    }
+
+    /**
+     * The blob is named after the package hash, so identical packages are uploaded once and shared by all
+     * deployments using the same storage account. Instead of deleting the package after deployment, only the
+     * least recently deployed packages beyond the retention count are deleted.
+     */
+    private void uploadContentAddressed(final StagedPackage staged, final CloudStorageAccount storageAccount)
+            throws Exception {
+        final String blobName = Files.asByteSource(staged.zipFile).hash(Hashing.sha256()).toString() + ZIP_EXT;
+
+        String packageUri = AzureStorageHelper.getBlobUriIfExists(storageAccount, DEPLOYMENT_PACKAGE_CONTAINER,
+                blobName);
+        if (packageUri == null) {
+            packageUri = uploadPackageToAzureStorage(staged.zipFile, storageAccount, blobName);
+        } else {
+            AzureStorageHelper.createPrivateContainerIfNotExists(storageAccount, DEPLOYMENT_PACKAGE_CONTAINER);
+            logInfo("");
+            logInfo(REUSE_PACKAGE + packageUri);
+        }
+        AzureStorageHelper.setBlobMetadata(storageAccount, DEPLOYMENT_PACKAGE_CONTAINER, blobName, LAST_DEPLOYED_KEY,
+                String.valueOf(System.currentTimeMillis()));
+
+        staged.packageUri = packageUri;
+        staged.packageBlobName = blobName;
+        staged.onDeployFinish = () -> deleteLeastRecentlyDeployedPackages(storageAccount);
+    }
+
+    protected void deleteLeastRecentlyDeployedPackages(final CloudStorageAccount storageAccount) {
+        try {
+            logInfo("");
+            logInfo(String.format(PRUNE_PACKAGES_START, functionsTask.getPackageRetentionCount()));
+            final List<CloudBlob> packages = AzureStorageHelper
+                    .listBlobsWithMetadata(storageAccount, DEPLOYMENT_PACKAGE_CONTAINER).stream()
+                    .filter(blob -> CONTENT_ADDRESSED_NAME.matcher(blob.getName()).matches())
+                    .sorted(Comparator.comparingLong(MSDeployArtifactHandlerImpl::getLastDeployed).reversed())
+                    .collect(Collectors.toList());
+            for (final CloudBlob blob : packages.subList(Math.min(packages.size(),
+                    Math.max(1, functionsTask.getPackageRetentionCount())), packages.size())) {
+                deletePackageFromAzureStorage(storageAccount, blob.getName());
+            }
+        } catch (Exception e) {
+            logError(PRUNE_PACKAGES_FAIL + e.getMessage());
+        }
+    }
 
-        deployWithPackageUri(app, packageUri, () -> deletePackageFromAzureStorage(storageAccount, blobName));
+    private static long getLastDeployed(final CloudBlob blob) {
+        final String lastDeployed = blob.getMetadata().get(LAST_DEPLOYED_KEY);
+        if (StringUtils.isNumeric(lastDeployed)) {
+            return Long.parseLong(lastDeployed);
+        }
+        final Date lastModified = blob.getProperties().getLastModified();
+        return lastModified == null ? 0 : lastModified.getTime();
     }
 
     protected void logInfo(final String message) {
@@ -73,27 +234,39 @@ public class MSDeployArtifactHandlerImpl implements ArtifactHandler {
         }
     }
 
-    private File createZipPackage() throws Exception {
-        logInfo("");
-        logInfo(CREATE_ZIP_START);
-
+    private ZipPackager getZipPackager() throws Exception {
         final String stageDirectoryPath = functionsTask.getDeploymentStageDirectory();
         final File stageDirectory = new File(stageDirectoryPath);
-        final File zipPackage = new File(stageDirectoryPath.concat(ZIP_EXT));
-
         if (!stageDirectory.exists()) {
-            String errorMessage = String.format(STAGE_DIR_NOT_FOUND, stageDirectoryPath);
-            logError(STAGE_DIR_NOT_FOUND);
-            throw new Exception(STAGE_DIR_NOT_FOUND);
+            final String errorMessage = String.format(STAGE_DIR_NOT_FOUND, stageDirectoryPath);
+            logError(errorMessage);
+            throw new Exception(errorMessage);
         }
 
-        ZipUtil.pack(stageDirectory, zipPackage);
+        logDebug(EXCLUDE_LOCAL_SETTINGS);
+        final ZipPackager zipPackager = new ZipPackager(stageDirectory).exclude(LOCAL_SETTINGS_FILE);
+        functionsTask.getZipExcludes().forEach(zipPackager::exclude);
+        if (functionsTask.getZipCompressionLevel() != null) {
+            zipPackager.withCompressionLevel(functionsTask.getZipCompressionLevel());
+        }
+        return zipPackager;
+    }
 
-        logDebug(REMOVE_LOCAL_SETTINGS);
-        ZipUtil.removeEntry(zipPackage, LOCAL_SETTINGS_FILE);
+    private void createZipPackage(final ZipPackager zipPackager, final File zipPackage) throws Exception {
+        logInfo("");
+        logInfo(CREATE_ZIP_START);
+
+        zipPackager.writeTo(zipPackage);
+
+        logInfo(CREATE_ZIP_DONE + zipPackage.getAbsolutePath());
+    }
 
-        logInfo(CREATE_ZIP_DONE + stageDirectoryPath.concat(ZIP_EXT));
-        return zipPackage;
+    /**
+     * Named after the target app, as several targets may be deployed to at the same time.
+     */
+    private File getZipFile() {
+        return Paths.get(functionsTask.getBuildDirectoryAbsolutePath(), AZURE_FUNCTIONS,
+                target.getAppName().concat(ZIP_EXT)).toFile();
     }
 
     protected CloudStorageAccount getCloudStorageAccount(final FunctionApp app) throws Exception {
@@ -107,7 +280,7 @@ public class MSDeployArtifactHandlerImpl implements ArtifactHandler {
     }
 
     protected String getBlobName() {
-        return functionsTask.getAppName()
+        return target.getAppName()
                 .concat(new SimpleDateFormat(".yyyyMMddHHmmssSSS").format(new Date()))
                 .concat(ZIP_EXT);
     }
@@ -117,7 +290,20 @@ public class MSDeployArtifactHandlerImpl implements ArtifactHandler {
         logInfo("");
         logInfo(UPLOAD_PACKAGE_START);
         final String packageUri = AzureStorageHelper.uploadFileAsBlob(zipPackage, storageAccount,
-                DEPLOYMENT_PACKAGE_CONTAINER, blobName);
+                DEPLOYMENT_PACKAGE_CONTAINER, blobName, new BlockBlobUploader(functionsTask.getLogger(),
+                        functionsTask.getUploadBlockSize(), functionsTask.getUploadConcurrency(),
+                        BlockBlobUploader.DEFAULT_MAX_RETRY_COUNT));
+        logInfo(UPLOAD_PACKAGE_DONE + packageUri);
+        return packageUri;
+    }
+
+    protected String streamPackageToAzureStorage(final ZipPackager zipPackager,
+                                                 final CloudStorageAccount storageAccount,
+                                                 final String blobName) throws Exception {
+        logInfo("");
+        logInfo(STREAM_PACKAGE_START);
+        final String packageUri = AzureStorageHelper.uploadStreamAsBlob(zipPackager::writeTo, storageAccount,
+                DEPLOYMENT_PACKAGE_CONTAINER, blobName, functionsTask.getUploadConcurrency());
         logInfo(UPLOAD_PACKAGE_DONE + packageUri);
         return packageUri;
     }
@@ -146,4 +332,27 @@ public class MSDeployArtifactHandlerImpl implements ArtifactHandler {
             logError(DELETE_PACKAGE_FAIL + blobName);
         }
     }
+
+    private static <T> T getResult(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static class StagedPackage {
+        private final String blobName;
+        private File zipFile;
+        private ZipPackager zipPackager;
+        private CloudStorageAccount storageAccount;
+        private String packageBlobName;
+        private String packageUri;
+        private Runnable onDeployFinish;
+
+        StagedPackage(final File zipFile, final String blobName) {
+            this.zipFile = zipFile;
+            this.blobName = blobName;
+        }
+    }
 }
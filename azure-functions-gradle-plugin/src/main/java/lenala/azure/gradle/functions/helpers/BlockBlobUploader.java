@@ -0,0 +1,147 @@
+package lenala.azure.gradle.functions.helpers;
+
+import com.microsoft.azure.storage.RetryNoRetry;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.blob.BlockEntry;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import org.gradle.api.logging.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Utility class to upload a file to a block blob as concurrently uploaded blocks.
+ * Every block is sent with its MD5, which the service verifies, and is retried on its own; the block list is only
+ * committed once all blocks are uploaded. Block requests are not also retried by the storage SDK, so a failing block
+ * is tried at most maxRetryCount + 1 times.
+ */
+public class BlockBlobUploader {
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_MAX_RETRY_COUNT = 3;
+
+    private static final long RETRY_INTERVAL_MILLIS = 1000;
+    private static final String UPLOAD_BLOCKS = "Uploading %d block(s) of %d bytes with %d thread(s)";
+    private static final String UPLOAD_BLOCK_FAILURE = "Failed to upload block %d, retrying (%d/%d): %s";
+    private static final String UPLOAD_BLOCK_RETRY_FAILURE = "Failed to upload block %d after %d retries";
+
+    private final Logger logger;
+    private final int blockSize;
+    private final int concurrency;
+    private final int maxRetryCount;
+
+    public BlockBlobUploader(final Logger logger) {
+        this(logger, DEFAULT_BLOCK_SIZE, DEFAULT_CONCURRENCY, DEFAULT_MAX_RETRY_COUNT);
+    }
+
+    public BlockBlobUploader(final Logger logger, final int blockSize, final int concurrency,
+                             final int maxRetryCount) {
+        this.logger = logger;
+        this.blockSize = blockSize;
+        this.concurrency = Math.max(1, concurrency);
+        this.maxRetryCount = Math.max(0, maxRetryCount);
+    }
+
+    public void upload(final File file, final CloudBlockBlob blob) throws Exception {
+        final long length = file.length();
+        final int blockCount = (int) Math.max(1, (length + blockSize - 1) / blockSize);
+        logger.quiet(String.format(UPLOAD_BLOCKS, blockCount, blockSize, Math.min(concurrency, blockCount)));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, blockCount));
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final List<Future<BlockEntry>> blocks = new ArrayList<>();
+            for (int i = 0; i < blockCount; i++) {
+                final int index = i;
+                blocks.add(executor.submit(() -> uploadBlockWithRetries(blob, channel, index, length)));
+            }
+
+            final List<BlockEntry> blockList = new ArrayList<>();
+            for (final Future<BlockEntry> block : blocks) {
+                blockList.add(getResult(block));
+            }
+            blob.commitBlockList(blockList);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BlockEntry uploadBlockWithRetries(final CloudBlockBlob blob, final FileChannel channel, final int index,
+                                              final long length) throws Exception {
+        final long offset = (long) index * blockSize;
+        final byte[] content = readBlock(channel, offset, (int) Math.min(blockSize, length - offset));
+        final String blockId = getBlockId(index);
+        int retryCount = 0;
+        while (true) {
+            try {
+                blob.uploadBlock(blockId, new ByteArrayInputStream(content), content.length, null,
+                        getBlockRequestOptions(), null);
+                return new BlockEntry(blockId);
+            } catch (Exception e) {
+                retryCount++;
+                if (retryCount > maxRetryCount) {
+                    throw new Exception(String.format(UPLOAD_BLOCK_RETRY_FAILURE, index, maxRetryCount), e);
+                }
+                logger.warn(String.format(UPLOAD_BLOCK_FAILURE, index, retryCount, maxRetryCount, e.getMessage()));
+                Thread.sleep(RETRY_INTERVAL_MILLIS * retryCount);
+            }
+        }
+    }
+
+    /**
+     * Positional reads, so all blocks share one channel.
+     */
+    private static byte[] readBlock(final FileChannel channel, final long offset, final int size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at offset " + (offset + buffer.position()));
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Block ids of a blob must all have the same length.
+     */
+    private static String getBlockId(final int index) {
+        return Base64.getEncoder().encodeToString(String.format("block-%08d", index).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The MD5 of the block is sent with each request and checked by the service.
+     */
+    public static BlobRequestOptions getRequestOptions() {
+        final BlobRequestOptions options = new BlobRequestOptions();
+        options.setUseTransactionalContentMD5(true);
+        return options;
+    }
+
+    /**
+     * The retries of a block are counted and logged by this class, instead of the SDK's default exponential retry.
+     */
+    private static BlobRequestOptions getBlockRequestOptions() {
+        final BlobRequestOptions options = getRequestOptions();
+        options.setRetryPolicyFactory(new RetryNoRetry());
+        return options;
+    }
+
+    private static <T> T getResult(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package lenala.azure.gradle.functions.helpers;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.primitives.Bytes;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.MethodInfo;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * On-disk index of Azure Function entry points.
+ * Class files and jars are keyed by the hash of their content, so only new or changed files are parsed;
+ * unchanged files are resolved from the index without being read as classes.
+ */
+public class FunctionIndex {
+    public static final String INDEX_FILE = "function-index.json";
+
+    private static final int INDEX_VERSION = 1;
+    private static final String FUNCTION_NAME = FunctionName.class.getName();
+    private static final String FUNCTION_NAME_CLASS_FILE = FUNCTION_NAME.replace('.', '/') + ".class";
+    private static final byte[] FUNCTION_NAME_DESCRIPTOR =
+            ("L" + FUNCTION_NAME.replace('.', '/') + ";").getBytes(StandardCharsets.UTF_8);
+    private static final String CLASS_EXT = ".class";
+    private static final String JAR_EXT = ".jar";
+
+    private static final String INDEX_READ_FAIL = "Failed to read function index %s, it will be rebuilt: %s";
+    private static final String INDEX_WRITE_FAIL = "Failed to save function index %s: %s";
+    private static final String INDEX_SKIP_URL = "Skip indexing unsupported class path entry: ";
+    private static final String INDEX_SKIP_JAR = "Skip indexing jar without possible function classes: ";
+    private static final String INDEX_PARTITION_TIME = "Function index: scanned %s in %d ms";
+    private static final String INDEX_TIME = "Function index: %d class path entries scanned in %d ms with %d thread(s)";
+    private static final String INDEX_SUMMARY = "Function index: %d file(s) parsed, %d file(s) reused from %s";
+
+    private final File indexFile;
+    private final Logger logger;
+    private final int parallelism;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private IndexData previous;
+    private IndexData current;
+    private final AtomicInteger parsedCount = new AtomicInteger();
+    private final AtomicInteger reusedCount = new AtomicInteger();
+
+    public FunctionIndex(final File indexFile, final Logger logger) {
+        this(indexFile, logger, 1);
+    }
+
+    /**
+     * @param parallelism maximum number of threads scanning class path entries, usually Gradle's max worker count
+     */
+    public FunctionIndex(final File indexFile, final Logger logger, final int parallelism) {
+        this.indexFile = indexFile;
+        this.logger = logger;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Find all classes declaring methods annotated with {@link FunctionName}.
+     * The index file is updated with the results, dropping entries that are no longer on the given class path.
+     * Class path entries, and the class files within directories, are scanned in parallel. Results are merged in
+     * class path order, so the first entry declaring a class wins, as with a class loader.
+     *
+     * @param urls class directories and jars to scan
+     * @return names of the methods annotated with {@link FunctionName}, keyed by class name
+     */
+    public Map<String, List<String>> findFunctionClasses(final List<URL> urls) throws IOException {
+        previous = readIndex();
+        current = new IndexData();
+        parsedCount.set(0);
+        reusedCount.set(0);
+
+        final long start = System.currentTimeMillis();
+        final List<Map<String, List<String>>> partitions = runInPool(() -> urls.parallelStream()
+                .map(this::indexPartition)
+                .collect(Collectors.toList()));
+        final Map<String, List<String>> result = new HashMap<>();
+        for (int i = partitions.size() - 1; i >= 0; i--) {
+            result.putAll(partitions.get(i));
+        }
+
+        writeIndex();
+        logger.quiet(String.format(INDEX_SUMMARY, parsedCount.get(), reusedCount.get(), indexFile.getAbsolutePath()));
+        logger.quiet(String.format(INDEX_TIME, urls.size(), System.currentTimeMillis() - start, parallelism));
+        return result;
+    }
+
+    private <R> R runInPool(final Callable<R> task) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Map<String, List<String>> indexPartition(final URL url) {
+        final long start = System.currentTimeMillis();
+        try {
+            final File file = toFile(url);
+            if (file == null || !file.exists()) {
+                logger.debug(INDEX_SKIP_URL + url);
+                return Collections.emptyMap();
+            } else if (file.isDirectory()) {
+                return indexDirectory(file);
+            } else if (file.getName().endsWith(JAR_EXT)) {
+                if (mayDeclareFunctions(file)) {
+                    return indexFile(file, this::scanJar);
+                }
+                logger.debug(INDEX_SKIP_JAR + file);
+                return Collections.emptyMap();
+            }
+            logger.debug(INDEX_SKIP_URL + url);
+            return Collections.emptyMap();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            logger.info(String.format(INDEX_PARTITION_TIME, url, System.currentTimeMillis() - start));
+        }
+    }
+
+    private Map<String, List<String>> indexDirectory(final File directory) throws IOException {
+        final List<Path> classFiles;
+        try (final Stream<Path> paths = java.nio.file.Files.walk(directory.toPath())) {
+            classFiles = paths.filter(path -> path.toString().endsWith(CLASS_EXT)).collect(Collectors.toList());
+        }
+        final Map<String, List<String>> result = new HashMap<>();
+        classFiles.parallelStream()
+                .map(classFile -> {
+                    try {
+                        return indexFile(classFile.toFile(), this::scanClassFile);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(Collectors.toList())
+                .forEach(result::putAll);
+        return result;
+    }
+
+    /**
+     * Safe to call from several threads; two files with the same content may both be parsed, which is harmless.
+     */
+    private Map<String, List<String>> indexFile(final File file, final FileScanner scanner) throws IOException {
+        final String path = file.getAbsolutePath();
+        final FileStamp stamp = getStamp(file, previous.stamps.get(path));
+        current.stamps.put(path, stamp);
+
+        Map<String, List<String>> entry = current.entries.get(stamp.hash);
+        if (entry == null) {
+            entry = previous.entries.get(stamp.hash);
+            if (entry == null) {
+                entry = scanner.scan(file);
+                parsedCount.incrementAndGet();
+            } else {
+                reusedCount.incrementAndGet();
+            }
+            current.entries.put(stamp.hash, entry);
+        } else {
+            reusedCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Re-use the recorded hash when size and modification time are unchanged, otherwise hash the content.
+     */
+    private static FileStamp getStamp(final File file, final FileStamp recorded) throws IOException {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        if (recorded != null && recorded.length == length && recorded.lastModified == lastModified) {
+            return recorded;
+        }
+        final FileStamp stamp = new FileStamp();
+        stamp.length = length;
+        stamp.lastModified = lastModified;
+        stamp.hash = Files.asByteSource(file).hash(Hashing.sha256()).toString();
+        return stamp;
+    }
+
+    /**
+     * Pre-filter reading only the central directory of the jar: a jar can declare functions only if it has class
+     * files and it is not the Azure Functions annotation library itself.
+     */
+    private static boolean mayDeclareFunctions(final File file) throws IOException {
+        boolean hasClasses = false;
+        try (final ZipFile zipFile = new ZipFile(file)) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final String name = entries.nextElement().getName();
+                if (name.equals(FUNCTION_NAME_CLASS_FILE)) {
+                    return false;
+                }
+                hasClasses |= name.endsWith(CLASS_EXT);
+            }
+        }
+        return hasClasses;
+    }
+
+    private Map<String, List<String>> scanClassFile(final File file) throws IOException {
+        try (final InputStream is = new FileInputStream(file)) {
+            return scanClassBytes(IOUtils.toByteArray(is));
+        }
+    }
+
+    private Map<String, List<String>> scanJar(final File file) throws IOException {
+        final Map<String, List<String>> result = new HashMap<>();
+        try (final ZipFile zipFile = new ZipFile(file)) {
+            final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(CLASS_EXT)) {
+                    try (final InputStream is = zipFile.getInputStream(entry)) {
+                        result.putAll(scanClassBytes(IOUtils.toByteArray(is)));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A class using {@link FunctionName} has the annotation descriptor in its constant pool, so classes without it
+     * are skipped without being parsed.
+     */
+    private static Map<String, List<String>> scanClassBytes(final byte[] bytes) throws IOException {
+        if (Bytes.indexOf(bytes, FUNCTION_NAME_DESCRIPTOR) < 0) {
+            return Collections.emptyMap();
+        }
+        return scanClass(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Read a single class file and collect the names of methods annotated with {@link FunctionName}.
+     * The class file is only parsed as data, the class itself is never loaded.
+     */
+    public static Map<String, List<String>> scanClass(final InputStream is) throws IOException {
+        final ClassFile classFile = new ClassFile(new DataInputStream(new BufferedInputStream(is)));
+        final List<String> methods = new ArrayList<>();
+        for (final Object method : classFile.getMethods()) {
+            final MethodInfo methodInfo = (MethodInfo) method;
+            final AnnotationsAttribute annotations =
+                    (AnnotationsAttribute) methodInfo.getAttribute(AnnotationsAttribute.visibleTag);
+            if (annotations != null && annotations.getAnnotation(FUNCTION_NAME) != null) {
+                methods.add(methodInfo.getName());
+            }
+        }
+        return methods.isEmpty() ?
+                Collections.emptyMap() :
+                Collections.singletonMap(classFile.getName(), methods);
+    }
+
+    private IndexData readIndex() {
+        if (indexFile.exists()) {
+            try {
+                final IndexData data = objectMapper.readValue(indexFile, IndexData.class);
+                if (data.version == INDEX_VERSION) {
+                    return data;
+                }
+            } catch (IOException e) {
+                logger.warn(String.format(INDEX_READ_FAIL, indexFile.getAbsolutePath(), e.getMessage()));
+            }
+        }
+        return new IndexData();
+    }
+
+    private void writeIndex() {
+        try {
+            indexFile.getParentFile().mkdirs();
+            objectMapper.writeValue(indexFile, current);
+        } catch (IOException e) {
+            logger.warn(String.format(INDEX_WRITE_FAIL, indexFile.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    private static File toFile(final URL url) {
+        try {
+            return Paths.get(url.toURI()).toFile();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface FileScanner {
+        Map<String, List<String>> scan(File file) throws IOException;
+    }
+
+    public static class FileStamp {
+        public long length;
+        public long lastModified;
+        public String hash;
+    }
+
+    public static class IndexData {
+        public int version = INDEX_VERSION;
+        public Map<String, FileStamp> stamps = new ConcurrentHashMap<>();
+        public Map<String, Map<String, List<String>>> entries = new ConcurrentHashMap<>();
+    }
+}
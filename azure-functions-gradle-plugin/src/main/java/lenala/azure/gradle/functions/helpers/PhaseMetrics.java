@@ -0,0 +1,250 @@
+package lenala.azure.gradle.functions.helpers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Utility class to measure the phases of a task: wall time, bytes processed and remote calls.
+ * Remote calls are the Azure management calls made while a phase ran plus the calls the phase counts itself. The
+ * management calls cannot be told apart between phases running on other threads at the same time, e.g. for several
+ * targets, so such phases record no remote calls when management calls were made while they ran.
+ */
+public class PhaseMetrics {
+    private static final String SUMMARY_FORMAT = "%-20s %-24s %10s %14s %8s";
+    private static final String CSV_HEADER = "phase,target,startMillis,wallMillis,bytes,remoteCalls";
+
+    @FunctionalInterface
+    public interface PhaseCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface PhaseRun<E extends Exception> {
+        void run() throws E;
+    }
+
+    public class Phase implements AutoCloseable {
+        private final String name;
+        private final String target;
+        private final Thread thread = Thread.currentThread();
+        private final long startNanos = System.nanoTime();
+        private final long startRemoteCalls = remoteCallCounter.getAsLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong remoteCalls = new AtomicLong();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // guarded by running
+        private boolean concurrent;
+
+        private Phase(final String name, final String target) {
+            this.name = name;
+            this.target = target == null ? "" : target;
+        }
+
+        public Phase addBytes(final long count) {
+            bytes.addAndGet(count);
+            return this;
+        }
+
+        public Phase addRemoteCalls(final long count) {
+            remoteCalls.addAndGet(count);
+            return this;
+        }
+
+        /**
+         * Record the phase; only the first call counts.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                final long managementCalls = remoteCallCounter.getAsLong() - startRemoteCalls;
+                final boolean attributable;
+                synchronized (running) {
+                    running.remove(this);
+                    attributable = !concurrent || managementCalls == 0;
+                }
+                records.add(new Record(name, target, toMillis(startNanos - PhaseMetrics.this.startNanos),
+                        toMillis(System.nanoTime() - startNanos), bytes.get(),
+                        attributable ? remoteCalls.get() + managementCalls : null));
+            }
+        }
+    }
+
+    public static class Record {
+        private final String phase;
+        private final String target;
+        private final long startMillis;
+        private final long wallMillis;
+        private final long bytes;
+        private final Long remoteCalls;
+
+        Record(final String phase, final String target, final long startMillis, final long wallMillis,
+               final long bytes, final Long remoteCalls) {
+            this.phase = phase;
+            this.target = target;
+            this.startMillis = startMillis;
+            this.wallMillis = wallMillis;
+            this.bytes = bytes;
+            this.remoteCalls = remoteCalls;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public long getWallMillis() {
+            return wallMillis;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return remote calls of the phase, null when it shared management calls with concurrent phases
+         */
+        public Long getRemoteCalls() {
+            return remoteCalls;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final LongSupplier remoteCallCounter;
+    private final List<Record> records = Collections.synchronizedList(new ArrayList<>());
+    private final Set<Phase> running = new HashSet<>();
+
+    /**
+     * @param remoteCallCounter total of remote calls made so far, read when phases start and end
+     */
+    public PhaseMetrics(final LongSupplier remoteCallCounter) {
+        this.remoteCallCounter = remoteCallCounter;
+    }
+
+    /**
+     * Start measuring a phase, until the returned phase is closed.
+     *
+     * @param target name of the app the phase works on, or null
+     */
+    public Phase start(final String name, final String target) {
+        final Phase phase = new Phase(name, target);
+        synchronized (running) {
+            for (final Phase other : running) {
+                // phases nested on the same thread include the calls of the inner phases
+                if (other.thread != phase.thread) {
+                    other.concurrent = true;
+                    phase.concurrent = true;
+                }
+            }
+            running.add(phase);
+        }
+        return phase;
+    }
+
+    /**
+     * Measure the action as a phase. Phases which count bytes or remote calls themselves use {@link #start}.
+     *
+     * @return result of the action
+     */
+    public <T, E extends Exception> T time(final String name, final String target, final PhaseCall<T, E> action)
+            throws E {
+        final Phase phase = start(name, target);
+        try {
+            return action.call();
+        } finally {
+            phase.close();
+        }
+    }
+
+    /**
+     * Measure the action as a phase.
+     */
+    public <E extends Exception> void run(final String name, final String target, final PhaseRun<E> action)
+            throws E {
+        final Phase phase = start(name, target);
+        try {
+            action.run();
+        } finally {
+            phase.close();
+        }
+    }
+
+    /**
+     * @return the recorded phases, in the order they started
+     */
+    public List<Record> getRecords() {
+        final List<Record> sorted;
+        synchronized (records) {
+            sorted = new ArrayList<>(records);
+        }
+        sorted.sort(Comparator.comparingLong(Record::getStartMillis));
+        return sorted;
+    }
+
+    public long getTotalMillis() {
+        return toMillis(System.nanoTime() - startNanos);
+    }
+
+    public void writeJson(final File file) throws IOException {
+        final Map<String, Object> report = new LinkedHashMap<>();
+        report.put("totalMillis", getTotalMillis());
+        report.put("phases", getRecords());
+        Files.createDirectories(file.getParentFile().toPath());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+    }
+
+    public void writeCsv(final File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            writer.println(CSV_HEADER);
+            for (final Record record : getRecords()) {
+                writer.println(String.join(",", csv(record.getPhase()), csv(record.getTarget()),
+                        String.valueOf(record.getStartMillis()), String.valueOf(record.getWallMillis()),
+                        String.valueOf(record.getBytes()), Objects.toString(record.getRemoteCalls(), "")));
+            }
+        }
+    }
+
+    public void logSummary(final Logger logger) {
+        logger.quiet(String.format(SUMMARY_FORMAT, "Phase", "Target", "Time (ms)", "Bytes", "Calls"));
+        for (final Record record : getRecords()) {
+            logger.quiet(String.format(SUMMARY_FORMAT, record.getPhase(), record.getTarget(),
+                    record.getWallMillis(), record.getBytes(), Objects.toString(record.getRemoteCalls(), "-")));
+        }
+        logger.quiet(String.format(SUMMARY_FORMAT, "Total", "", getTotalMillis(), "", ""));
+    }
+
+    private static String csv(final String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    private static long toMillis(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
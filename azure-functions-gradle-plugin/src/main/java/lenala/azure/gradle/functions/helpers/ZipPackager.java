@@ -0,0 +1,121 @@
+package lenala.azure.gradle.functions.helpers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Single pass zip writer for a staging directory.
+ * Exclusions are applied while walking the directory, so excluded files are never written. Entries are sorted by
+ * path, so unchanged staging directories produce the same entry order. Directories, including empty ones, get their
+ * own entries with a fixed time, as their modification time depends on the order their files were written in.
+ */
+public class ZipPackager {
+    private static final String[] COMPRESSED_EXTENSIONS = {".jar", ".war", ".zip", ".gz", ".png", ".jpg"};
+    // Same as Gradle's reproducible archives, the earliest time all zip tools read the same way
+    private static final long DIRECTORY_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1).getTimeInMillis();
+
+    private final File sourceDirectory;
+    private final List<PathMatcher> excludes = new ArrayList<>();
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    public ZipPackager(final File sourceDirectory) {
+        this.sourceDirectory = sourceDirectory;
+    }
+
+    /**
+     * @param pattern glob matched against the path relative to the source directory, e.g. 'local.settings.json'
+     *                or '**&#47;*.pdb'
+     */
+    public ZipPackager exclude(final String pattern) {
+        excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+        return this;
+    }
+
+    /**
+     * @param compressionLevel 0-9, or -1 for the default level; already compressed files are always stored as is
+     */
+    public ZipPackager withCompressionLevel(final int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    public File writeTo(final File zipFile) throws IOException {
+        try (final OutputStream os = new BufferedOutputStream(new FileOutputStream(zipFile))) {
+            writeTo(os);
+        }
+        return zipFile;
+    }
+
+    /**
+     * Write the zip to the given stream, which is left open.
+     */
+    public void writeTo(final OutputStream os) throws IOException {
+        final ZipOutputStream zos = new ZipOutputStream(os);
+        for (final Path file : listFiles()) {
+            final String entryName = sourceDirectory.toPath().relativize(file).toString().replace('\\', '/');
+            if (Files.isDirectory(file)) {
+                final ZipEntry entry = new ZipEntry(entryName + "/");
+                entry.setTime(DIRECTORY_TIME);
+                zos.putNextEntry(entry);
+                zos.closeEntry();
+                continue;
+            }
+            final ZipEntry entry = new ZipEntry(entryName);
+            entry.setTime(file.toFile().lastModified());
+            // Level 0 deflate avoids the extra CRC pass a STORED entry needs, for a few bytes per 64 KB
+            zos.setLevel(isCompressed(entryName) ? Deflater.NO_COMPRESSION : compressionLevel);
+            zos.putNextEntry(entry);
+            Files.copy(file, zos);
+            zos.closeEntry();
+        }
+        zos.finish();
+        zos.flush();
+    }
+
+    /**
+     * @return files and directories below the source directory, parents before their children
+     */
+    private List<Path> listFiles() throws IOException {
+        final Path root = sourceDirectory.toPath();
+        try (final Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(path -> !path.equals(root))
+                    .filter(path -> Files.isRegularFile(path) || Files.isDirectory(path))
+                    .filter(path -> !isExcluded(root.relativize(path)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private boolean isExcluded(final Path relativePath) {
+        final Path unixPath = Paths.get(relativePath.toString().replace('\\', '/'));
+        return excludes.stream().anyMatch(matcher -> matcher.matches(unixPath));
+    }
+
+    private static boolean isCompressed(final String entryName) {
+        final String name = entryName.toLowerCase(Locale.ENGLISH);
+        for (final String extension : COMPRESSED_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
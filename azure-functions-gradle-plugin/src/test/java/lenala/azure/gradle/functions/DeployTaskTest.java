@@ -0,0 +1,59 @@
+package lenala.azure.gradle.functions;
+
+import lenala.azure.gradle.functions.configuration.AppTarget;
+import groovy.lang.Closure;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class DeployTaskTest {
+    private DeployTask task;
+
+    @Before
+    public void createTask() {
+        final Project project = ProjectBuilder.builder().build();
+        project.getPluginManager().apply(AzureFunctionsPlugin.class);
+        task = project.getTasks().create("deployFunctions", DeployTask.class);
+        task.setAppName("orders-app");
+        task.setResourceGroup("orders");
+        task.setRegion("westus2");
+    }
+
+    @Test
+    public void targetsTakeLeftOutSettingsFromConfiguredApp() {
+        task.setTargets(Arrays.asList(target("orders-eu", null, "westeurope"), target("orders-us", "shop", null)));
+
+        final AppTarget europe = task.getTargets().get(0).withDefaults(task.getAppTarget());
+        assertEquals("orders-eu", europe.getAppName());
+        assertEquals("orders", europe.getResourceGroup());
+        assertEquals("westeurope", europe.getRegion());
+
+        final AppTarget us = task.getTargets().get(1).withDefaults(task.getAppTarget());
+        assertEquals("shop", us.getResourceGroup());
+        assertEquals("westus2", us.getRegion());
+    }
+
+    @Test(expected = GradleException.class)
+    public void rejectsTargetWithoutAppName() {
+        task.setTargets(Collections.singletonList(target(" ", "shop", null)));
+    }
+
+    private static Closure<?> target(final String appName, final String resourceGroup, final String region) {
+        return new Closure<Void>(DeployTaskTest.class) {
+            public Void doCall() {
+                final AppTarget target = (AppTarget) getDelegate();
+                target.setAppName(appName);
+                target.setResourceGroup(resourceGroup);
+                target.setRegion(region);
+                return null;
+            }
+        };
+    }
+}
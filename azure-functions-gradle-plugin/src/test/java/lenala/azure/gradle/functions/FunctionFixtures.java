@@ -0,0 +1,161 @@
+package lenala.azure.gradle.functions;
+
+import com.microsoft.azure.functions.annotation.FunctionName;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small function classes compiled into a directory, so tests can scan them and change or delete their class files.
+ */
+public final class FunctionFixtures {
+    /**
+     * Functions using built-in bindings with default and explicit values, arrays, enums, a return binding, a storage
+     * account, a custom binding and a nested class.
+     */
+    public static final Map<String, String> SAMPLE_SOURCES = new LinkedHashMap<>();
+
+    static {
+        SAMPLE_SOURCES.put("fixtures.HttpFunctions", lines(
+                "package fixtures;",
+                "import com.microsoft.azure.functions.*;",
+                "import com.microsoft.azure.functions.annotation.*;",
+                "import java.util.Optional;",
+                "public class HttpFunctions {",
+                "    @FunctionName(\"hello\")",
+                "    public HttpResponseMessage hello(@HttpTrigger(name = \"req\",",
+                "            methods = {HttpMethod.GET, HttpMethod.POST}, authLevel = AuthorizationLevel.ANONYMOUS)",
+                "            HttpRequestMessage<Optional<String>> request, ExecutionContext context) {",
+                "        return null;",
+                "    }",
+                "    @FunctionName(\"echo\")",
+                "    public String echo(@HttpTrigger(name = \"req\") String body) {",
+                "        return body;",
+                "    }",
+                "}"));
+        SAMPLE_SOURCES.put("fixtures.QueueFunctions", lines(
+                "package fixtures;",
+                "import com.microsoft.azure.functions.*;",
+                "import com.microsoft.azure.functions.annotation.*;",
+                "public class QueueFunctions {",
+                "    @FunctionName(\"copy\")",
+                "    @StorageAccount(\"AzureWebJobsStorage\")",
+                "    @QueueOutput(name = \"out\", queueName = \"copies\")",
+                "    public String copy(@QueueTrigger(name = \"message\", queueName = \"orders\") String message,",
+                "            @BlobOutput(name = \"blob\", path = \"orders/{id}\") OutputBinding<String> blob) {",
+                "        return message;",
+                "    }",
+                "    public static class Nested {",
+                "        @FunctionName(\"archive\")",
+                "        public void archive(",
+                "                @TimerTrigger(name = \"timer\", schedule = \"0 */5 * * * *\") String timer,",
+                "                @Archive(name = \"archive\", path = \"old\") OutputBinding<String> archive) {",
+                "        }",
+                "    }",
+                "}"));
+        SAMPLE_SOURCES.put("fixtures.Archive", lines(
+                "package fixtures;",
+                "import com.microsoft.azure.functions.annotation.CustomBinding;",
+                "import java.lang.annotation.*;",
+                "@Target(ElementType.PARAMETER)",
+                "@Retention(RetentionPolicy.RUNTIME)",
+                "@CustomBinding(direction = \"out\", name = \"\", type = \"archive\")",
+                "public @interface Archive {",
+                "    String name();",
+                "    String path() default \"\";",
+                "    int retentionDays() default 30;",
+                "}"));
+    }
+
+    private FunctionFixtures() {
+    }
+
+    /**
+     * @return source of a class with one HTTP triggered function per name
+     */
+    public static String functionSource(final String className, final String... functionNames) {
+        final int packageEnd = className.lastIndexOf('.');
+        final List<String> lines = new ArrayList<>();
+        lines.add("package " + className.substring(0, packageEnd) + ";");
+        lines.add("import com.microsoft.azure.functions.annotation.*;");
+        lines.add("public class " + className.substring(packageEnd + 1) + " {");
+        for (final String functionName : functionNames) {
+            lines.add("    @FunctionName(\"" + functionName + "\")");
+            lines.add("    public String " + functionName + "(@HttpTrigger(name = \"req\") String body) {");
+            lines.add("        return body;");
+            lines.add("    }");
+        }
+        lines.add("}");
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Compile the sources, keyed by class name, into the directory, against the Azure Functions annotations.
+     */
+    public static void compile(final File outputDirectory, final Map<String, String> sources) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("The tests need a JDK to compile the function fixtures.");
+        }
+        final List<JavaFileObject> compilationUnits = new ArrayList<>();
+        sources.forEach((className, source) -> compilationUnits.add(new SourceFile(className, source)));
+        final List<String> options = Arrays.asList("-d", outputDirectory.getAbsolutePath(),
+                "-classpath", getAnnotationLibrary().getAbsolutePath(), "-source", "1.8", "-target", "1.8",
+                "-Xlint:-options");
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        if (!compiler.getTask(null, null, diagnostics, options, null, compilationUnits).call()) {
+            final StringBuilder message = new StringBuilder("Failed to compile the function fixtures:");
+            for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                message.append('\n').append(diagnostic);
+            }
+            throw new IOException(message.toString());
+        }
+    }
+
+    /**
+     * @return jar of the Azure Functions annotations, which the fixtures are compiled against
+     */
+    public static File getAnnotationLibrary() {
+        try {
+            return new File(FunctionName.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static URL toUrl(final File file) throws IOException {
+        return file.toURI().toURL();
+    }
+
+    private static String lines(final String... lines) {
+        return String.join("\n", lines);
+    }
+
+    private static class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        SourceFile(final String className, final String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}
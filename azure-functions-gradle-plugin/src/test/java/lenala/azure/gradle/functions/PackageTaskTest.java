@@ -0,0 +1,199 @@
+package lenala.azure.gradle.functions;
+
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ProjectComponentIdentifier;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.zip.ZipUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static lenala.azure.gradle.functions.AzureFunctionsExtension.SCAN_SCOPE_ALL;
+import static lenala.azure.gradle.functions.AzureFunctionsExtension.SCAN_SCOPE_PROJECT;
+import static lenala.azure.gradle.functions.AzureFunctionsExtension.SCAN_SCOPE_SELECTED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PackageTaskTest {
+    private static final ModuleVersionIdentifier LIBRARY = moduleVersion("com.example", "library", "1.0");
+    private static final String APP_NAME = "orders-app";
+    private static final String ORDERS = "fixtures.Orders";
+    private static final String SHOP = "fixtures.Shop";
+    // Marks function.json files written by the first run, so a rewrite shows as a new modification time
+    private static final long FIRST_RUN = 1546300800000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Project project;
+    private File classes;
+    private int runs;
+
+    @Before
+    public void createProject() throws Exception {
+        project = ProjectBuilder.builder().withProjectDir(temporaryFolder.newFolder("project")).build();
+        project.getPluginManager().apply("java");
+        project.getPluginManager().apply(AzureFunctionsPlugin.class);
+        classes = temporaryFolder.newFolder("classes");
+    }
+
+    @Test
+    public void skipsFunctionJsonWithSameFingerprint() throws Exception {
+        compile(Collections.singletonMap(ORDERS, FunctionFixtures.functionSource(ORDERS, "orders", "invoices")));
+        packageFunctions();
+        markFirstRun("orders", "invoices");
+
+        packageFunctions();
+
+        assertEquals(FIRST_RUN, getFunctionJson("orders").lastModified());
+        assertEquals(FIRST_RUN, getFunctionJson("invoices").lastModified());
+    }
+
+    @Test
+    public void rewritesOnlyChangedFunctionJson() throws Exception {
+        compile(Collections.singletonMap(ORDERS,
+                FunctionFixtures.functionSource(ORDERS, "orders", "invoices", "returns")));
+        packageFunctions();
+        markFirstRun("orders", "invoices", "returns");
+
+        final Map<String, String> sources = new LinkedHashMap<>();
+        sources.put(ORDERS, FunctionFixtures.functionSource(ORDERS, "invoices"));
+        sources.put(SHOP, FunctionFixtures.functionSource(SHOP, "orders"));
+        new File(classes, "fixtures/Orders.class").delete();
+        compile(sources);
+        packageFunctions();
+
+        assertEquals(FIRST_RUN, getFunctionJson("invoices").lastModified());
+        assertNotEquals(FIRST_RUN, getFunctionJson("orders").lastModified());
+        assertTrue(readFunctionJson("orders").contains(SHOP + ".orders"));
+        assertFalse(getFunctionJson("returns").getParentFile().exists());
+    }
+
+    @Test
+    public void rewritesMissingFunctionJson() throws Exception {
+        compile(Collections.singletonMap(ORDERS, FunctionFixtures.functionSource(ORDERS, "orders")));
+        packageFunctions();
+        final String content = readFunctionJson("orders");
+        assertTrue(getFunctionJson("orders").delete());
+
+        packageFunctions();
+
+        assertEquals(content, readFunctionJson("orders"));
+    }
+
+    @Test
+    public void searchesProjectDependenciesInEveryScope() {
+        final ComponentIdentifier project = stub(ProjectComponentIdentifier.class);
+        for (final String scanScope : Arrays.asList(SCAN_SCOPE_PROJECT, SCAN_SCOPE_SELECTED, SCAN_SCOPE_ALL)) {
+            assertTrue(scanScope, PackageTask.isInScanScope(project, LIBRARY, scanScope, Collections.emptyList()));
+        }
+    }
+
+    @Test
+    public void searchesExternalDependenciesOnlyWhenInScope() {
+        assertFalse(isExternalInScanScope(SCAN_SCOPE_PROJECT, "com.example:library"));
+        assertTrue(isExternalInScanScope(SCAN_SCOPE_ALL));
+        assertFalse(isExternalInScanScope(SCAN_SCOPE_SELECTED));
+    }
+
+    @Test
+    public void selectsExternalDependenciesByCoordinates() {
+        assertTrue(isExternalInScanScope(SCAN_SCOPE_SELECTED, "com.example"));
+        assertTrue(isExternalInScanScope(SCAN_SCOPE_SELECTED, "com.example:library"));
+        assertTrue(isExternalInScanScope(SCAN_SCOPE_SELECTED, "com.example:library:1.0"));
+        assertTrue(isExternalInScanScope(SCAN_SCOPE_SELECTED, "org.example", "com.example:library"));
+
+        assertFalse(isExternalInScanScope(SCAN_SCOPE_SELECTED, "com"));
+        assertFalse(isExternalInScanScope(SCAN_SCOPE_SELECTED, "com.example:lib"));
+        assertFalse(isExternalInScanScope(SCAN_SCOPE_SELECTED, "com.example:library:2.0"));
+        assertFalse(isExternalInScanScope(SCAN_SCOPE_SELECTED, "com.example:library:1.0:sources"));
+    }
+
+    private void compile(final Map<String, String> sources) throws IOException {
+        FunctionFixtures.compile(classes, sources);
+        final File jarFile = project.getTasks().getByPath("jar").getOutputs().getFiles().getSingleFile();
+        Files.createDirectories(jarFile.getParentFile().toPath());
+        ZipUtil.pack(classes, jarFile);
+    }
+
+    /**
+     * Run a new task each time, as a new build would.
+     */
+    private void packageFunctions() {
+        final PackageTask task = project.getTasks().create("azureFunctionsPackage" + runs++, PackageTask.class);
+        task.setAppName(APP_NAME);
+        task.setFinalName(APP_NAME);
+        task.setOutputDirectory(classes.getAbsolutePath());
+        task.packageFunction();
+    }
+
+    private void markFirstRun(final String... functionNames) {
+        for (final String functionName : functionNames) {
+            assertTrue(getFunctionJson(functionName).setLastModified(FIRST_RUN));
+        }
+    }
+
+    private File getFunctionJson(final String functionName) {
+        return project.getBuildDir().toPath()
+                .resolve(AzureFunctionsPlugin.AZURE_FUNCTIONS).resolve(APP_NAME).resolve(functionName)
+                .resolve("function.json").toFile();
+    }
+
+    private String readFunctionJson(final String functionName) throws IOException {
+        return new String(Files.readAllBytes(getFunctionJson(functionName).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static boolean isExternalInScanScope(final String scanScope, final String... scanDependencies) {
+        final List<String> dependencies = Arrays.asList(scanDependencies);
+        return PackageTask.isInScanScope(stub(ModuleComponentIdentifier.class), LIBRARY, scanScope, dependencies);
+    }
+
+    private static ModuleVersionIdentifier moduleVersion(final String group, final String name,
+                                                         final String version) {
+        return (ModuleVersionIdentifier) Proxy.newProxyInstance(PackageTaskTest.class.getClassLoader(),
+                new Class<?>[]{ModuleVersionIdentifier.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getGroup":
+                            return group;
+                        case "getName":
+                            return name;
+                        case "getVersion":
+                            return version;
+                        case "toString":
+                            return group + ":" + name + ":" + version;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Identifiers are only told apart by their type.
+     */
+    private static <T> T stub(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(PackageTaskTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("toString")) {
+                        return type.getSimpleName();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+}
@@ -0,0 +1,110 @@
+package lenala.azure.gradle.functions.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lenala.azure.gradle.functions.FunctionFixtures;
+import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
+import lenala.azure.gradle.functions.helpers.FunctionIndex;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnnotationHandlerBaseTest {
+    private static final ObjectWriter WRITER = new ObjectMapper()
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .writerWithDefaultPrettyPrinter();
+    private static final int PARALLELISM = 8;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Logger logger = Logging.getLogger(AnnotationHandlerBaseTest.class);
+    private List<URL> urls;
+    private List<URL> classpathUrls;
+
+    @Before
+    public void compileFixtures() throws Exception {
+        final List<String> functionNames = new ArrayList<>();
+        for (int i = 30; i > 0; i--) {
+            functionNames.add("batch" + i);
+        }
+        final Map<String, String> sources = new LinkedHashMap<>(FunctionFixtures.SAMPLE_SOURCES);
+        sources.put("fixtures.Batches",
+                FunctionFixtures.functionSource("fixtures.Batches", functionNames.toArray(new String[0])));
+        final File classes = temporaryFolder.newFolder("classes");
+        FunctionFixtures.compile(classes, sources);
+        urls = Collections.singletonList(FunctionFixtures.toUrl(classes));
+        classpathUrls = Collections.singletonList(FunctionFixtures.toUrl(FunctionFixtures.getAnnotationLibrary()));
+    }
+
+    @Test
+    public void parallelReflectionMatchesSequential() throws Exception {
+        final List<Map.Entry<String, String>> sequential = generateFunctionJson(new AnnotationHandlerImpl(logger));
+        final List<Map.Entry<String, String>> parallel =
+                generateFunctionJson(new AnnotationHandlerImpl(logger).withParallelism(PARALLELISM));
+
+        assertEquals(34, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void parallelBytecodeMatchesSequential() throws Exception {
+        final List<Map.Entry<String, String>> sequential = generateFunctionJson(
+                new BytecodeAnnotationHandlerImpl(logger, newFunctionIndex("sequential-index.json")));
+        final List<Map.Entry<String, String>> parallel = generateFunctionJson(
+                new BytecodeAnnotationHandlerImpl(logger, newFunctionIndex("parallel-index.json"))
+                        .withParallelism(PARALLELISM));
+
+        assertEquals(34, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void configurationsAreSortedByFunctionName() throws Exception {
+        final List<String> functionNames = new ArrayList<>();
+        for (final Map.Entry<String, String> function :
+                generateFunctionJson(new AnnotationHandlerImpl(logger).withParallelism(PARALLELISM))) {
+            functionNames.add(function.getKey());
+        }
+
+        final List<String> sorted = new ArrayList<>(functionNames);
+        Collections.sort(sorted);
+        assertEquals(sorted, functionNames);
+    }
+
+    private FunctionIndex newFunctionIndex(final String fileName) {
+        return new FunctionIndex(new File(temporaryFolder.getRoot(), fileName), logger);
+    }
+
+    /**
+     * @return function.json content by function name, in the order the handler returned the configurations
+     */
+    private <T> List<Map.Entry<String, String>> generateFunctionJson(final AnnotationHandler<T> handler)
+            throws Exception {
+        final Map<String, FunctionConfiguration> configurations;
+        try {
+            configurations = handler.generateConfigurations(handler.findFunctions(urls, classpathUrls));
+        } finally {
+            handler.close();
+        }
+        final Map<String, String> result = new LinkedHashMap<>();
+        for (final Map.Entry<String, FunctionConfiguration> entry : configurations.entrySet()) {
+            result.put(entry.getKey(), WRITER.writeValueAsString(entry.getValue()));
+        }
+        return new ArrayList<>(result.entrySet());
+    }
+}
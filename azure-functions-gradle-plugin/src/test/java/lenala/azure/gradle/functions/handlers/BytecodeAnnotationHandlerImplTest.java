@@ -0,0 +1,83 @@
+package lenala.azure.gradle.functions.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lenala.azure.gradle.functions.FunctionFixtures;
+import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
+import lenala.azure.gradle.functions.helpers.FunctionIndex;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BytecodeAnnotationHandlerImplTest {
+    private static final ObjectWriter WRITER = new ObjectMapper()
+            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+            .writerWithDefaultPrettyPrinter();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Logger logger = Logging.getLogger(BytecodeAnnotationHandlerImplTest.class);
+    private List<URL> urls;
+    private List<URL> classpathUrls;
+
+    @Before
+    public void compileFixtures() throws Exception {
+        final File classes = temporaryFolder.newFolder("classes");
+        FunctionFixtures.compile(classes, FunctionFixtures.SAMPLE_SOURCES);
+        urls = Collections.singletonList(FunctionFixtures.toUrl(classes));
+        classpathUrls = Collections.singletonList(FunctionFixtures.toUrl(FunctionFixtures.getAnnotationLibrary()));
+    }
+
+    @Test
+    public void generatesSameFunctionJsonAsReflection() throws Exception {
+        final Map<String, String> expected = generateFunctionJson(new AnnotationHandlerImpl(logger));
+        final Map<String, String> actual = generateFunctionJson(
+                new BytecodeAnnotationHandlerImpl(logger, newFunctionIndex("bytecode-index.json")));
+
+        assertEquals(new HashSet<>(Arrays.asList("hello", "echo", "copy", "archive")), expected.keySet());
+        assertEquals(expected, actual);
+        assertTrue(actual.get("archive"), actual.get("archive").contains("\"type\" : \"archive\""));
+        assertTrue(actual.get("copy"), actual.get("copy").contains("\"connection\" : \"AzureWebJobsStorage\""));
+    }
+
+    @Test
+    public void generatesSameFunctionJsonWithIndex() throws Exception {
+        assertEquals(generateFunctionJson(new AnnotationHandlerImpl(logger)),
+                generateFunctionJson(new AnnotationHandlerImpl(logger, newFunctionIndex("reflection-index.json"))));
+    }
+
+    private FunctionIndex newFunctionIndex(final String fileName) {
+        return new FunctionIndex(new File(temporaryFolder.getRoot(), fileName), logger);
+    }
+
+    private <T> Map<String, String> generateFunctionJson(final AnnotationHandler<T> handler) throws Exception {
+        final Map<String, FunctionConfiguration> configurations;
+        try {
+            configurations = handler.generateConfigurations(handler.findFunctions(urls, classpathUrls));
+        } finally {
+            handler.close();
+        }
+        final Map<String, String> result = new TreeMap<>();
+        for (final Map.Entry<String, FunctionConfiguration> entry : configurations.entrySet()) {
+            result.put(entry.getKey(), WRITER.writeValueAsString(entry.getValue()));
+        }
+        return result;
+    }
+}
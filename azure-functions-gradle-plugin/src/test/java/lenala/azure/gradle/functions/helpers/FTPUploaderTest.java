@@ -0,0 +1,329 @@
+package lenala.azure.gradle.functions.helpers;
+
+import org.gradle.api.logging.Logging;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockftpserver.core.command.Command;
+import org.mockftpserver.core.session.Session;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.command.AbstractFakeCommandHandler;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystemEntry;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FTPUploaderTest {
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+    private static final String TARGET_DIRECTORY = "/site/wwwroot";
+    private static final int LARGE_FILE_SIZE = 3 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FakeFtpServer server;
+    private UnixFakeFileSystem fileSystem;
+    private StorCommandHandler storHandler;
+    private File sourceDirectory;
+
+    @Before
+    public void startServer() throws Exception {
+        fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry(TARGET_DIRECTORY));
+        storHandler = new StorCommandHandler();
+        server = new FakeFtpServer();
+        server.setServerControlPort(0);
+        server.setFileSystem(fileSystem);
+        server.addUserAccount(new UserAccount(USERNAME, PASSWORD, "/"));
+        server.setCommandHandler("STOR", storHandler);
+        server.setCommandHandler("REST", new RestCommandHandler());
+        server.setCommandHandler("SIZE", new SizeCommandHandler());
+        server.start();
+        while (!server.isStarted()) {
+            Thread.sleep(10);
+        }
+        sourceDirectory = temporaryFolder.newFolder("staging");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    private void upload(final FTPUploader uploader) {
+        uploader.uploadDirectoryWithRetries("localhost:" + server.getServerControlPort(), USERNAME, PASSWORD,
+                sourceDirectory.getAbsolutePath(), TARGET_DIRECTORY, 1);
+    }
+
+    private byte[] writeFile(final String relativePath, final int size) throws IOException {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        final File file = new File(sourceDirectory, relativePath);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+        return content;
+    }
+
+    private void addRemoteFile(final String relativePath, final int size) {
+        final FileEntry entry = new FileEntry(TARGET_DIRECTORY + "/" + relativePath);
+        entry.setContents(new byte[size]);
+        fileSystem.add(entry);
+    }
+
+    private byte[] getRemoteContent(final String relativePath) throws IOException {
+        return getContent((FileEntry) fileSystem.getEntry(TARGET_DIRECTORY + "/" + relativePath));
+    }
+
+    @Test
+    public void uploadsDirectoryOverSeveralConnections() throws Exception {
+        final Map<String, byte[]> contents = new HashMap<>();
+        for (int i = 0; i < 6; i++) {
+            contents.put("function-" + i + "/function.json", writeFile("function-" + i + "/function.json", 100 + i));
+        }
+
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 3));
+
+        for (final Map.Entry<String, byte[]> entry : contents.entrySet()) {
+            assertArrayEquals(entry.getValue(), getRemoteContent(entry.getKey()));
+        }
+        assertEquals(3, storHandler.sessions.size());
+    }
+
+    @Test
+    public void synchronizesOnlyChangedFiles() throws Exception {
+        writeFile("app.jar", 1000);
+        writeFile("host.json", 10);
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 2).withSync(false));
+
+        storHandler.storedPaths.clear();
+        final byte[] content = writeFile("app.jar", 2000);
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 2).withSync(false));
+
+        assertArrayEquals(content, getRemoteContent("app.jar"));
+        assertEquals(Arrays.asList(TARGET_DIRECTORY + "/app.jar", TARGET_DIRECTORY + ".ftp-manifest.json"),
+                storHandler.storedPaths);
+    }
+
+    @Test
+    public void deletesStaleFilesOnlyWhenRequested() throws Exception {
+        writeFile("app.jar", 1000);
+        writeFile("stale.json", 10);
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1).withSync(true));
+        Files.delete(new File(sourceDirectory, "stale.json").toPath());
+
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1).withSync(false));
+        assertTrue(fileSystem.exists(TARGET_DIRECTORY + "/stale.json"));
+
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1).withSync(true));
+        assertFalse(fileSystem.exists(TARGET_DIRECTORY + "/stale.json"));
+        assertTrue(fileSystem.exists(TARGET_DIRECTORY + "/app.jar"));
+    }
+
+    @Test
+    public void skipsFilesUploadedByFailedAttempt() throws Exception {
+        writeFile("a.jar", 300);
+        writeFile("b.jar", 200);
+        final byte[] content = writeFile("c.jar", 100);
+        // More failures than the retries of a single file, so the first attempt of the directory fails
+        storHandler.rejectUploads("c.jar", 4);
+
+        new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1).uploadDirectoryWithRetries(
+                "localhost:" + server.getServerControlPort(), USERNAME, PASSWORD, sourceDirectory.getAbsolutePath(),
+                TARGET_DIRECTORY, 2);
+
+        assertArrayEquals(content, getRemoteContent("c.jar"));
+        assertEquals(Arrays.asList(TARGET_DIRECTORY + "/a.jar", TARGET_DIRECTORY + "/b.jar",
+                TARGET_DIRECTORY + "/c.jar"), storHandler.storedPaths);
+        final File[] journals = sourceDirectory.getParentFile().listFiles(
+                (dir, name) -> name.endsWith(".ftp-journal"));
+        assertEquals(0, journals.length);
+    }
+
+    @Test
+    public void retriesFailedFile() throws Exception {
+        final byte[] content = writeFile("app.jar", 1000);
+        writeFile("host.json", 10);
+        storHandler.failUploads("app.jar", 2);
+
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 2));
+
+        assertArrayEquals(content, getRemoteContent("app.jar"));
+        assertEquals(0, storHandler.failuresLeft.get());
+    }
+
+    @Test
+    public void retriesLargeFileWithoutResumingExistingRemoteFile() throws Exception {
+        final byte[] content = writeFile("lib/dependency.jar", LARGE_FILE_SIZE);
+        // The previously deployed, shorter version of the file must not be taken for a partial upload
+        addRemoteFile("lib/dependency.jar", LARGE_FILE_SIZE / 3);
+        storHandler.rejectUploads("dependency.jar", 1);
+
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1));
+
+        assertArrayEquals(content, getRemoteContent("lib/dependency.jar"));
+        assertEquals(0, storHandler.resumeCount.get());
+        assertEquals(Arrays.asList("dependency.jar"), fileSystem.listNames(TARGET_DIRECTORY + "/lib"));
+    }
+
+    @Test
+    public void resumesInterruptedUploadOfLargeFile() throws Exception {
+        final byte[] content = writeFile("lib/dependency.jar", LARGE_FILE_SIZE);
+        addRemoteFile("lib/dependency.jar", LARGE_FILE_SIZE / 3);
+        storHandler.failUploads("dependency.jar", 1);
+
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1));
+
+        assertArrayEquals(content, getRemoteContent("lib/dependency.jar"));
+        assertEquals(1, storHandler.resumeCount.get());
+        assertEquals(Arrays.asList("dependency.jar"), fileSystem.listNames(TARGET_DIRECTORY + "/lib"));
+    }
+
+    @Test
+    public void synchronizesAfterRetryReplacedConnection() throws Exception {
+        writeFile("app.jar", 1000);
+        writeFile("stale.json", 10);
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1).withSync(true));
+        assertTrue(fileSystem.exists(TARGET_DIRECTORY + "/stale.json"));
+
+        final byte[] content = writeFile("app.jar", 2000);
+        Files.delete(new File(sourceDirectory, "stale.json").toPath());
+        storHandler.failUploads("app.jar", 1);
+        upload(new FTPUploader(Logging.getLogger(FTPUploaderTest.class), 1).withSync(true));
+
+        assertArrayEquals(content, getRemoteContent("app.jar"));
+        assertFalse(fileSystem.exists(TARGET_DIRECTORY + "/stale.json"));
+        final String manifest = new String(getContent((FileEntry) fileSystem.getEntry(TARGET_DIRECTORY +
+                ".ftp-manifest.json")), StandardCharsets.UTF_8);
+        assertFalse(manifest.contains("stale.json"));
+    }
+
+    private static byte[] getContent(final FileEntry entry) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = entry.createInputStream()) {
+            final byte[] buffer = new byte[8192];
+            for (int count = is.read(buffer); count >= 0; count = is.read(buffer)) {
+                os.write(buffer, 0, count);
+            }
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * STOR honouring the REST offset, which FakeFtpServer ignores. Uploads of matching files can be made to fail
+     * before any data is stored, or after storing half of the data as a dropped connection would.
+     */
+    private static class StorCommandHandler extends AbstractFakeCommandHandler {
+        private final AtomicInteger rejectionsLeft = new AtomicInteger();
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+        private final AtomicInteger resumeCount = new AtomicInteger();
+        private final List<String> storedPaths = Collections.synchronizedList(new ArrayList<>());
+        private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+        private volatile String failingName = "";
+
+        void rejectUploads(final String name, final int count) {
+            failingName = name;
+            rejectionsLeft.set(count);
+        }
+
+        void failUploads(final String name, final int count) {
+            failingName = name;
+            failuresLeft.set(count);
+        }
+
+        private boolean takeFailure(final String path, final AtomicInteger failures) {
+            return path.contains(failingName) && failures.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+        }
+
+        @Override
+        protected void handle(final Command command, final Session session) {
+            verifyLoggedIn(session);
+            final String path = getRealPath(session, command.getRequiredParameter(0));
+            final Long offset = (Long) session.getAttribute(RestCommandHandler.OFFSET);
+            session.removeAttribute(RestCommandHandler.OFFSET);
+            if (takeFailure(path, rejectionsLeft)) {
+                session.sendReply(451, "Requested action aborted: local error in processing.");
+                return;
+            }
+            sendReply(session, 150);
+            session.openDataConnection();
+            final byte[] data = session.readData();
+            session.closeDataConnection();
+
+            final boolean fail = takeFailure(path, failuresLeft);
+            final ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            final FileSystemEntry existing = getFileSystem().getEntry(path);
+            try {
+                if (offset != null && existing instanceof FileEntry) {
+                    resumeCount.incrementAndGet();
+                    contents.write(getContent((FileEntry) existing), 0, offset.intValue());
+                }
+                contents.write(data, 0, fail ? data.length / 2 : data.length);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            if (existing instanceof FileEntry) {
+                ((FileEntry) existing).setContents(contents.toByteArray());
+            } else {
+                final FileEntry entry = new FileEntry(path);
+                entry.setContents(contents.toByteArray());
+                getFileSystem().add(entry);
+            }
+            if (!fail) {
+                storedPaths.add(path);
+                sessions.add(session);
+            }
+            session.sendReply(fail ? 426 : 226, fail ? "Connection closed; transfer aborted." : "Transfer complete.");
+        }
+    }
+
+    private static class RestCommandHandler extends AbstractFakeCommandHandler {
+        private static final String OFFSET = "restartOffset";
+
+        @Override
+        protected void handle(final Command command, final Session session) {
+            verifyLoggedIn(session);
+            session.setAttribute(OFFSET, Long.valueOf(command.getRequiredParameter(0)));
+            session.sendReply(350, "Restarting at " + command.getRequiredParameter(0) + ".");
+        }
+    }
+
+    private static class SizeCommandHandler extends AbstractFakeCommandHandler {
+        @Override
+        protected void handle(final Command command, final Session session) {
+            verifyLoggedIn(session);
+            final FileSystemEntry entry = getFileSystem().getEntry(
+                    getRealPath(session, command.getRequiredParameter(0)));
+            if (entry instanceof FileEntry) {
+                session.sendReply(213, String.valueOf(((FileEntry) entry).getSize()));
+            } else {
+                session.sendReply(550, "File not found.");
+            }
+        }
+    }
+}
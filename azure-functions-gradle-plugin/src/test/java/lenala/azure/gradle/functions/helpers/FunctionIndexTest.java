@@ -0,0 +1,141 @@
+package lenala.azure.gradle.functions.helpers;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lenala.azure.gradle.functions.FunctionFixtures;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.zeroturnaround.zip.ZipUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FunctionIndexTest {
+    private static final String ORDERS = "fixtures.Orders";
+    private static final String INVOICES = "fixtures.Invoices";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Logger logger = Logging.getLogger(FunctionIndexTest.class);
+    private File classes;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        classes = temporaryFolder.newFolder("classes");
+        indexFile = new File(temporaryFolder.getRoot(), FunctionIndex.INDEX_FILE);
+    }
+
+    @Test
+    public void rescansChangedClass() throws Exception {
+        compile(ORDERS, "orders");
+        assertEquals(Collections.singletonMap(ORDERS, Collections.singletonList("orders")), findFunctionClasses());
+
+        compile(ORDERS, "orders", "cancelOrder");
+
+        assertEquals(Collections.singletonMap(ORDERS, Arrays.asList("orders", "cancelOrder")),
+                findFunctionClasses());
+    }
+
+    @Test
+    public void dropsDeletedClass() throws Exception {
+        compile(ORDERS, "orders");
+        compile(INVOICES, "invoices");
+        assertEquals(2, findFunctionClasses().size());
+
+        final File invoicesClass = new File(classes, "fixtures/Invoices.class");
+        assertTrue(invoicesClass.delete());
+
+        assertEquals(Collections.singletonMap(ORDERS, Collections.singletonList("orders")), findFunctionClasses());
+        final Map<String, FunctionIndex.FileStamp> stamps = readIndex().stamps;
+        assertTrue(stamps.containsKey(new File(classes, "fixtures/Orders.class").getAbsolutePath()));
+        assertFalse(stamps.containsKey(invoicesClass.getAbsolutePath()));
+    }
+
+    @Test
+    public void reusesUnchangedClasses() throws Exception {
+        compile(ORDERS, "orders");
+        final Map<String, List<String>> expected = findFunctionClasses();
+        final FunctionIndex.IndexData index = readIndex();
+
+        assertEquals(expected, findFunctionClasses());
+        assertEquals(hashes(index), hashes(readIndex()));
+    }
+
+    @Test
+    public void skipsJarsWhichCannotDeclareFunctions() throws Exception {
+        compile(ORDERS, "orders");
+        final File functionsJar = temporaryFolder.newFile("functions.jar");
+        ZipUtil.pack(classes, functionsJar);
+        final File resources = temporaryFolder.newFolder("resources");
+        Files.write(new File(resources, "application.properties").toPath(),
+                "name=value".getBytes(StandardCharsets.UTF_8));
+        final File resourcesJar = temporaryFolder.newFile("resources.jar");
+        ZipUtil.pack(resources, resourcesJar);
+        final File annotationLibrary = FunctionFixtures.getAnnotationLibrary();
+
+        final Map<String, List<String>> functionClasses = new FunctionIndex(indexFile, logger).findFunctionClasses(
+                toUrls(functionsJar, resourcesJar, annotationLibrary));
+
+        assertEquals(Collections.singletonMap(ORDERS, Collections.singletonList("orders")), functionClasses);
+        assertEquals(Collections.singleton(functionsJar.getAbsolutePath()), readIndex().stamps.keySet());
+    }
+
+    @Test
+    public void firstClassPathEntryDeclaringClassWins() throws Exception {
+        compile(ORDERS, "orders");
+        final File otherClasses = temporaryFolder.newFolder("other");
+        FunctionFixtures.compile(otherClasses,
+                Collections.singletonMap(ORDERS, FunctionFixtures.functionSource(ORDERS, "legacyOrders")));
+
+        final Map<String, List<String>> functionClasses =
+                new FunctionIndex(indexFile, logger, 4).findFunctionClasses(toUrls(classes, otherClasses));
+
+        assertEquals(Collections.singletonMap(ORDERS, Collections.singletonList("orders")), functionClasses);
+    }
+
+    private void compile(final String className, final String... functionNames) throws IOException {
+        FunctionFixtures.compile(classes,
+                Collections.singletonMap(className, FunctionFixtures.functionSource(className, functionNames)));
+    }
+
+    private Map<String, List<String>> findFunctionClasses() throws IOException {
+        return new FunctionIndex(indexFile, logger).findFunctionClasses(toUrls(classes));
+    }
+
+    private FunctionIndex.IndexData readIndex() throws IOException {
+        return new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .readValue(indexFile, FunctionIndex.IndexData.class);
+    }
+
+    private static Map<String, String> hashes(final FunctionIndex.IndexData index) {
+        final Map<String, String> hashes = new HashMap<>();
+        index.stamps.forEach((path, stamp) -> hashes.put(path, stamp.hash));
+        return hashes;
+    }
+
+    private static List<URL> toUrls(final File... files) throws IOException {
+        final URL[] urls = new URL[files.length];
+        for (int i = 0; i < files.length; i++) {
+            urls[i] = FunctionFixtures.toUrl(files[i]);
+        }
+        return Arrays.asList(urls);
+    }
+}
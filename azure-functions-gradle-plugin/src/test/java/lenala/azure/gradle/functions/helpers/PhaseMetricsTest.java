@@ -0,0 +1,74 @@
+package lenala.azure.gradle.functions.helpers;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PhaseMetricsTest {
+    private final AtomicLong managementCalls = new AtomicLong();
+    private final PhaseMetrics metrics = new PhaseMetrics(managementCalls::get);
+
+    @Test
+    public void countsManagementCallsOfSequentialPhases() {
+        try (PhaseMetrics.Phase phase = metrics.start("first", "app")) {
+            managementCalls.addAndGet(2);
+            phase.addRemoteCalls(1);
+        }
+        try (PhaseMetrics.Phase phase = metrics.start("second", "app")) {
+            managementCalls.incrementAndGet();
+        }
+
+        final Map<String, Long> calls = getRemoteCalls();
+        assertEquals(Long.valueOf(3), calls.get("first"));
+        assertEquals(Long.valueOf(1), calls.get("second"));
+    }
+
+    @Test
+    public void includesCallsOfNestedPhases() {
+        try (PhaseMetrics.Phase outer = metrics.start("outer", "app")) {
+            managementCalls.incrementAndGet();
+            try (PhaseMetrics.Phase inner = metrics.start("inner", "app")) {
+                managementCalls.incrementAndGet();
+            }
+        }
+
+        final Map<String, Long> calls = getRemoteCalls();
+        assertEquals(Long.valueOf(2), calls.get("outer"));
+        assertEquals(Long.valueOf(1), calls.get("inner"));
+    }
+
+    @Test
+    public void dropsManagementCallsOfConcurrentPhases() throws Exception {
+        try (PhaseMetrics.Phase phase = metrics.start("local", "app")) {
+            final Thread other = new Thread(() -> {
+                try (PhaseMetrics.Phase otherPhase = metrics.start("remote", "other")) {
+                    managementCalls.incrementAndGet();
+                }
+                try (PhaseMetrics.Phase otherPhase = metrics.start("upload", "other")) {
+                    otherPhase.addRemoteCalls(4);
+                }
+            });
+            other.start();
+            other.join();
+            phase.addRemoteCalls(1);
+        }
+
+        final Map<String, Long> calls = getRemoteCalls();
+        assertNull(calls.get("local"));
+        assertNull(calls.get("remote"));
+        assertEquals(Long.valueOf(4), calls.get("upload"));
+    }
+
+    private Map<String, Long> getRemoteCalls() {
+        final Map<String, Long> calls = new HashMap<>();
+        for (final PhaseMetrics.Record record : metrics.getRecords()) {
+            calls.put(record.getPhase(), record.getRemoteCalls());
+        }
+        return calls;
+    }
+}
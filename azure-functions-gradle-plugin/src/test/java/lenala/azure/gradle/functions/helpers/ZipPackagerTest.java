@@ -0,0 +1,128 @@
+package lenala.azure.gradle.functions.helpers;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ZipPackagerTest {
+    // Zip entry times have a two second resolution
+    private static final long LAST_MODIFIED = 1546300800000L;
+    private static final List<String> FILES = Arrays.asList(
+            "host.json", "app.jar", "hello/function.json", "queue/function.json", "lib/a.jar", "local.settings.json");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesEntriesSortedByPath() throws Exception {
+        final File staging = createStagingDirectory("staging", FILES);
+
+        assertEquals(Arrays.asList("app.jar", "hello/", "hello/function.json", "host.json", "lib/", "lib/a.jar",
+                "local.settings.json", "queue/", "queue/function.json"), readEntryNames(zip(staging)));
+    }
+
+    @Test
+    public void writesEmptyDirectories() throws Exception {
+        final File staging = createStagingDirectory("staging", Collections.singletonList("host.json"));
+        Files.createDirectories(staging.toPath().resolve("bin/empty"));
+
+        assertEquals(Arrays.asList("bin/", "bin/empty/", "host.json"), readEntryNames(zip(staging)));
+    }
+
+    @Test
+    public void writesSameBytesWhateverOrderFilesWereCreatedIn() throws Exception {
+        final List<String> reversed = new ArrayList<>(FILES);
+        Collections.reverse(reversed);
+
+        assertArrayEquals(zip(createStagingDirectory("first", FILES)),
+                zip(createStagingDirectory("second", reversed)));
+    }
+
+    @Test
+    public void keepsModificationTimeOfFiles() throws Exception {
+        final byte[] zip = zip(createStagingDirectory("staging", FILES));
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                if (!entry.isDirectory()) {
+                    assertEquals(entry.getName(), LAST_MODIFIED, entry.getTime());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void writesDirectoriesWithFixedTime() throws Exception {
+        final File staging = createStagingDirectory("staging", FILES);
+        final byte[] zip = zip(staging);
+        final long directoryTime = getDirectoryTime(zip);
+
+        assertTrue(new File(staging, "hello").setLastModified(LAST_MODIFIED));
+        assertEquals(directoryTime, getDirectoryTime(zip(staging)));
+    }
+
+    @Test
+    public void skipsExcludedFiles() throws Exception {
+        final File staging = createStagingDirectory("staging", FILES);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new ZipPackager(staging).exclude("local.settings.json").exclude("**/*.jar").writeTo(os);
+
+        assertEquals(Arrays.asList("app.jar", "hello/", "hello/function.json", "host.json", "lib/", "queue/",
+                "queue/function.json"), readEntryNames(os.toByteArray()));
+    }
+
+    private File createStagingDirectory(final String name, final List<String> files) throws IOException {
+        final File directory = temporaryFolder.newFolder(name);
+        for (final String file : files) {
+            final File target = new File(directory, file);
+            Files.createDirectories(target.getParentFile().toPath());
+            Files.write(target.toPath(), ("content of " + file).getBytes(StandardCharsets.UTF_8));
+            target.setLastModified(LAST_MODIFIED);
+        }
+        return directory;
+    }
+
+    private static byte[] zip(final File directory) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        new ZipPackager(directory).writeTo(os);
+        return os.toByteArray();
+    }
+
+    private static long getDirectoryTime(final byte[] zip) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                if (entry.getName().equals("hello/")) {
+                    return entry.getTime();
+                }
+            }
+        }
+        throw new AssertionError("No entry for directory hello");
+    }
+
+    private static List<String> readEntryNames(final byte[] zip) throws IOException {
+        final List<String> names = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,87 @@
+package lenala.azure.gradle.benchmarks;
+
+import lenala.azure.gradle.functions.AzureFunctionsExtension;
+import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
+import lenala.azure.gradle.functions.handlers.AnnotationHandler;
+import lenala.azure.gradle.functions.handlers.AnnotationHandlerImpl;
+import lenala.azure.gradle.functions.handlers.BytecodeAnnotationHandlerImpl;
+import lenala.azure.gradle.functions.helpers.FunctionIndex;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Function discovery and configuration generation of PackageTask, with a function index built from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnnotationHandlerBenchmark {
+    private static final Logger LOGGER = Logging.getLogger(AnnotationHandlerBenchmark.class);
+
+    @Param({"10", "100", "1000"})
+    public int functionCount;
+
+    @Param({AzureFunctionsExtension.REFLECTION_SCANNER, AzureFunctionsExtension.BYTECODE_SCANNER})
+    public String annotationScanner;
+
+    private List<URL> urls;
+    private File indexFile;
+    private AnnotationHandler<Object> handler;
+    private Set<Object> methods;
+
+    @Setup(Level.Trial)
+    public void createProject() throws Exception {
+        urls = Collections.singletonList(SyntheticProjects.getFunctionClasses(functionCount).toURI().toURL());
+        indexFile = new File(SyntheticProjects.getWorkDirectory(),
+                "index-" + functionCount + "-" + annotationScanner + ".json");
+        deleteIndex();
+        // The bytecode handler resolves annotations with the class pool of its last search
+        handler = getAnnotationHandler();
+        methods = handler.findFunctions(urls, Collections.emptyList());
+        if (methods.size() != functionCount) {
+            throw new IllegalStateException("Found " + methods.size() + " of " + functionCount + " functions");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteIndex() throws Exception {
+        Files.deleteIfExists(indexFile.toPath());
+    }
+
+    @SuppressWarnings("unchecked")
+    private AnnotationHandler<Object> getAnnotationHandler() {
+        final FunctionIndex functionIndex = new FunctionIndex(indexFile, LOGGER);
+        final AnnotationHandler<?> handler = AzureFunctionsExtension.BYTECODE_SCANNER.equals(annotationScanner) ?
+                new BytecodeAnnotationHandlerImpl(LOGGER, functionIndex) :
+                new AnnotationHandlerImpl(LOGGER, functionIndex);
+        return (AnnotationHandler<Object>) handler;
+    }
+
+    @Benchmark
+    public Set<Object> findFunctions() throws Exception {
+        return getAnnotationHandler().findFunctions(urls, Collections.emptyList());
+    }
+
+    @Benchmark
+    public Map<String, FunctionConfiguration> generateConfigurations() throws Exception {
+        return handler.generateConfigurations(methods);
+    }
+}
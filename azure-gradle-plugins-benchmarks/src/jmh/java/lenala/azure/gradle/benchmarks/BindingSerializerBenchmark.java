@@ -0,0 +1,69 @@
+package lenala.azure.gradle.benchmarks;
+
+import lenala.azure.gradle.functions.configuration.FunctionConfiguration;
+import lenala.azure.gradle.functions.handlers.AnnotationHandler;
+import lenala.azure.gradle.functions.handlers.AnnotationHandlerImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gradle.api.logging.Logging;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the function.json contents, with the writer settings of PackageTask.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BindingSerializerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int functionCount;
+
+    private Map<String, FunctionConfiguration> configurations;
+
+    @Setup(Level.Trial)
+    public void generateConfigurations() throws Exception {
+        final AnnotationHandler<Method> handler = new AnnotationHandlerImpl(
+                Logging.getLogger(BindingSerializerBenchmark.class));
+        configurations = handler.generateConfigurations(handler.findFunctions(Collections.singletonList(
+                SyntheticProjects.getFunctionClasses(functionCount).toURI().toURL()), Collections.emptyList()));
+    }
+
+    private static ObjectWriter getObjectWriter() {
+        return new ObjectMapper()
+                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+                .writerWithDefaultPrettyPrinter();
+    }
+
+    @Benchmark
+    public long serializeWithNewWriter() throws Exception {
+        long size = 0;
+        for (final FunctionConfiguration configuration : configurations.values()) {
+            size += getObjectWriter().writeValueAsBytes(configuration).length;
+        }
+        return size;
+    }
+
+    @Benchmark
+    public long serializeWithSharedWriter() throws Exception {
+        final ObjectWriter objectWriter = getObjectWriter();
+        long size = 0;
+        for (final FunctionConfiguration configuration : configurations.values()) {
+            size += objectWriter.writeValueAsBytes(configuration).length;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,78 @@
+package lenala.azure.gradle.benchmarks;
+
+import lenala.azure.gradle.functions.helpers.FTPUploader;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploading a staging directory to an in-process FTP server, which keeps the files in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FtpUploaderBenchmark {
+    private static final Logger LOGGER = Logging.getLogger(FtpUploaderBenchmark.class);
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "password";
+    private static final String TARGET_DIRECTORY = "/site/wwwroot";
+
+    @Param({"10", "100"})
+    public int stagingSizeMb;
+
+    @Param({"1", "4"})
+    public int connectionCount;
+
+    private FakeFtpServer server;
+    private String stagingDirectory;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        stagingDirectory = SyntheticProjects.getStagingDirectory(stagingSizeMb).getAbsolutePath();
+        server = new FakeFtpServer();
+        server.setServerControlPort(0);
+        server.addUserAccount(new UserAccount(USERNAME, PASSWORD, "/"));
+        clearFileSystem();
+        server.start();
+        while (!server.isStarted()) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Start each upload from an empty site, so no file is skipped or resumed.
+     */
+    @Setup(Level.Invocation)
+    public void clearFileSystem() {
+        final UnixFakeFileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry(TARGET_DIRECTORY));
+        server.setFileSystem(fileSystem);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Benchmark
+    public void uploadDirectory() {
+        new FTPUploader(LOGGER, connectionCount).uploadDirectoryWithRetries(
+                "localhost:" + server.getServerControlPort(), USERNAME, PASSWORD, stagingDirectory,
+                TARGET_DIRECTORY, 1);
+    }
+}
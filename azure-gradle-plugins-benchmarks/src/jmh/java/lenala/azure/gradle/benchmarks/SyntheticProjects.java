@@ -0,0 +1,155 @@
+package lenala.azure.gradle.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the inputs of the benchmarks: compiled projects with a given number of functions, and staging
+ * directories of a given size. Inputs are kept in the work directory and reused by later runs.
+ */
+public final class SyntheticProjects {
+    private static final String WORK_DIR_PROPERTY = "benchmarks.workDir";
+    private static final int FUNCTIONS_PER_CLASS = 10;
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private SyntheticProjects() {
+    }
+
+    public static File getWorkDirectory() {
+        final String workDir = System.getProperty(WORK_DIR_PROPERTY);
+        return workDir == null ? new File(System.getProperty("java.io.tmpdir"), "azure-gradle-benchmarks") :
+                new File(workDir);
+    }
+
+    /**
+     * @return directory of the compiled classes, declaring HTTP and queue triggered functions with output bindings
+     */
+    public static File getFunctionClasses(final int functionCount) throws IOException {
+        final File projectDir = new File(getWorkDirectory(), "functions-" + functionCount);
+        final File classesDir = new File(projectDir, "classes");
+        if (new File(projectDir, COMPLETE_MARKER).exists()) {
+            return classesDir;
+        }
+
+        FileUtils.deleteDirectory(projectDir);
+        final File sourcesDir = new File(projectDir, "src");
+        final List<String> arguments = new ArrayList<>();
+        arguments.add("-d");
+        arguments.add(classesDir.getAbsolutePath());
+        arguments.add("-cp");
+        arguments.add(System.getProperty("java.class.path"));
+        for (int classIndex = 0; classIndex * FUNCTIONS_PER_CLASS < functionCount; classIndex++) {
+            final int count = Math.min(FUNCTIONS_PER_CLASS, functionCount - classIndex * FUNCTIONS_PER_CLASS);
+            final File source = new File(sourcesDir, "bench/Functions" + classIndex + ".java");
+            FileUtils.writeStringToFile(source, getFunctionSource(classIndex, count), StandardCharsets.UTF_8);
+            arguments.add(source.getAbsolutePath());
+        }
+        Files.createDirectories(classesDir.toPath());
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("The benchmarks need a JDK to compile the synthetic functions");
+        }
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Failed to compile the synthetic functions in " + sourcesDir);
+        }
+        Files.createFile(new File(projectDir, COMPLETE_MARKER).toPath());
+        return classesDir;
+    }
+
+    private static String getFunctionSource(final int classIndex, final int count) {
+        final StringBuilder source = new StringBuilder()
+                .append("package bench;\n\n")
+                .append("import com.microsoft.azure.functions.*;\n")
+                .append("import com.microsoft.azure.functions.annotation.*;\n")
+                .append("import java.util.Optional;\n\n")
+                .append("public class Functions").append(classIndex).append(" {\n");
+        for (int i = 0; i < count; i++) {
+            final String name = "f" + classIndex + "_" + i;
+            if (i % 2 == 0) {
+                source.append("    @FunctionName(\"http-").append(name).append("\")\n")
+                        .append("    public HttpResponseMessage ").append(name).append("(\n")
+                        .append("            @HttpTrigger(name = \"req\", methods = {HttpMethod.GET, HttpMethod.POST},")
+                        .append(" authLevel = AuthorizationLevel.ANONYMOUS, route = \"items/{id}\")")
+                        .append(" HttpRequestMessage<Optional<String>> request,\n")
+                        .append("            @QueueOutput(name = \"msg\", queueName = \"queue-").append(name)
+                        .append("\", connection = \"AzureWebJobsStorage\") OutputBinding<String> msg,\n")
+                        .append("            final ExecutionContext context) {\n")
+                        .append("        return null;\n")
+                        .append("    }\n\n");
+            } else {
+                source.append("    @FunctionName(\"queue-").append(name).append("\")\n")
+                        .append("    public void ").append(name).append("(\n")
+                        .append("            @QueueTrigger(name = \"message\", queueName = \"queue-").append(name)
+                        .append("\", connection = \"AzureWebJobsStorage\") String message,\n")
+                        .append("            @BlobOutput(name = \"blob\", path = \"out/{rand-guid}\",")
+                        .append(" connection = \"AzureWebJobsStorage\") OutputBinding<String> blob,\n")
+                        .append("            final ExecutionContext context) {\n")
+                        .append("    }\n\n");
+            }
+        }
+        return source.append("}\n").toString();
+    }
+
+    /**
+     * @return a staging directory like the one of a function app: mostly incompressible jars under lib, and a
+     * function.json per function
+     */
+    public static File getStagingDirectory(final int sizeMb) throws IOException {
+        final File stagingDir = new File(getWorkDirectory(), "staging-" + sizeMb + "mb");
+        final File marker = new File(getWorkDirectory(), "staging-" + sizeMb + "mb" + COMPLETE_MARKER);
+        if (marker.exists()) {
+            return stagingDir;
+        }
+
+        FileUtils.deleteDirectory(stagingDir);
+        final Random random = new Random(sizeMb);
+        final long jarBytes = sizeMb * 1024L * 1024 * 9 / 10;
+        final byte[] buffer = new byte[64 * 1024];
+        long written = 0;
+        for (int i = 0; written < jarBytes; i++) {
+            final long size = Math.min(jarBytes - written, 256 * 1024 + random.nextInt(2 * 1024 * 1024));
+            final File jar = new File(stagingDir, "lib/dependency-" + i + ".jar");
+            Files.createDirectories(jar.getParentFile().toPath());
+            try (OutputStream os = Files.newOutputStream(jar.toPath())) {
+                for (long remaining = size; remaining > 0; remaining -= buffer.length) {
+                    random.nextBytes(buffer);
+                    os.write(buffer, 0, (int) Math.min(buffer.length, remaining));
+                }
+            }
+            written += size;
+        }
+
+        final long configBytes = sizeMb * 1024L * 1024 - written;
+        for (int i = 0; written - jarBytes < configBytes; i++) {
+            final String json = getFunctionJson(i, 1024 + random.nextInt(3 * 1024));
+            FileUtils.writeStringToFile(new File(stagingDir, "function-" + i + "/function.json"), json,
+                    StandardCharsets.UTF_8);
+            written += json.length();
+        }
+        Files.createFile(marker.toPath());
+        return stagingDir;
+    }
+
+    private static String getFunctionJson(final int index, final int size) {
+        final StringBuilder json = new StringBuilder("{\n  \"scriptFile\" : \"../app.jar\",\n")
+                .append("  \"entryPoint\" : \"bench.Functions.f").append(index).append("\",\n")
+                .append("  \"bindings\" : [");
+        for (int binding = 0; json.length() < size; binding++) {
+            json.append(binding == 0 ? "" : ",").append(" {\n    \"type\" : \"queueTrigger\",\n")
+                    .append("    \"direction\" : \"in\",\n    \"name\" : \"message").append(binding).append("\",\n")
+                    .append("    \"queueName\" : \"queue-").append(index).append("\"\n  }");
+        }
+        return json.append(" ]\n}\n").toString();
+    }
+}
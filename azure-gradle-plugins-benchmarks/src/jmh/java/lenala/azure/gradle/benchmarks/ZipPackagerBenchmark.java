@@ -0,0 +1,55 @@
+package lenala.azure.gradle.benchmarks;
+
+import lenala.azure.gradle.functions.helpers.ZipPackager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.zeroturnaround.zip.ZipUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zipping a staging directory with ZipPackager, against zt-zip which packaged it before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ZipPackagerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int stagingSizeMb;
+
+    private File stagingDirectory;
+    private File zipFile;
+
+    @Setup(Level.Trial)
+    public void createStagingDirectory() throws IOException {
+        stagingDirectory = SyntheticProjects.getStagingDirectory(stagingSizeMb);
+        zipFile = new File(SyntheticProjects.getWorkDirectory(), "staging-" + stagingSizeMb + "mb.zip");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteZip() throws IOException {
+        Files.deleteIfExists(zipFile.toPath());
+    }
+
+    @Benchmark
+    public long zipPackager() throws IOException {
+        return new ZipPackager(stagingDirectory).writeTo(zipFile).length();
+    }
+
+    @Benchmark
+    public long ztZip() {
+        ZipUtil.pack(stagingDirectory, zipFile);
+        return zipFile.length();
+    }
+}
@@ -3,11 +3,20 @@ package lenala.azure.gradle.webapp;
 import com.microsoft.azure.management.appservice.PricingTier;
 import groovy.lang.Closure;
 import lenala.azure.gradle.webapp.configuration.AppService;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.Authentication;
 import lenala.azure.gradle.webapp.configuration.Deployment;
+import lenala.azure.gradle.webapp.helpers.ParallelDeployer;
 import lenala.azure.gradle.webapp.model.PricingTierEnum;
+import org.apache.commons.lang3.StringUtils;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.PROPERTY_MISSING_TEMPLATE;
+
 public class AzureWebAppExtension {
     public static final String WEBAPP_EXTENSION_NAME = "azureWebApp";
     private final Project project;
@@ -22,6 +31,10 @@ public class AzureWebAppExtension {
     private AppService appService;
     private Authentication authentication;
     private Deployment deployment;
+    private List<AppTarget> targets = new ArrayList<>();
+    private int deployConcurrency = ParallelDeployer.DEFAULT_CONCURRENCY;
+    private boolean failFast = true;
+    private boolean metricsSummary;
 
     public AzureWebAppExtension(Project project) {
         this.project = project;
@@ -48,6 +61,56 @@ public class AzureWebAppExtension {
         return region;
     }
 
+    /**
+     * The configured Web App, which is deployed to unless other targets are configured.
+     */
+    public AppTarget getAppTarget() {
+        return new AppTarget(appName, resourceGroup, region,
+                deployment == null ? null : deployment.getDeploymentSlot());
+    }
+
+    public List<AppTarget> getTargets() {
+        return targets;
+    }
+
+    public void setTargets(List<Closure<?>> closures) {
+        targets = new ArrayList<>();
+        if (closures != null) {
+            closures.forEach(closure -> {
+                final AppTarget target = new AppTarget();
+                project.configure(target, closure);
+                if (StringUtils.isBlank(target.getAppName())) {
+                    throw new GradleException(String.format(PROPERTY_MISSING_TEMPLATE, "azureWebApp.targets.appName"));
+                }
+                targets.add(target);
+            });
+        }
+    }
+
+    public int getDeployConcurrency() {
+        return deployConcurrency;
+    }
+
+    public void setDeployConcurrency(int deployConcurrency) {
+        this.deployConcurrency = deployConcurrency;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    public boolean isMetricsSummary() {
+        return metricsSummary;
+    }
+
+    public void setMetricsSummary(boolean metricsSummary) {
+        this.metricsSummary = metricsSummary;
+    }
+
     public PricingTier getPricingTier() {
         return pricingTier == null ? PricingTier.STANDARD_S1 : pricingTier.toPricingTier();
     }
@@ -1,5 +1,6 @@
 package lenala.azure.gradle.webapp;
 
+import lenala.azure.gradle.webapp.auth.AzureCredentialsCache;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 
@@ -9,6 +10,7 @@ public class AzureWebappPlugin implements Plugin<Project> {
     public void apply(Project project) {
         AzureWebAppExtension azureWebAppExtension = new AzureWebAppExtension(project);
         project.getExtensions().add(WEBAPP_EXTENSION_NAME, azureWebAppExtension);
+        AzureCredentialsCache.clearWhenBuildFinishes(project.getGradle());
         project.getTasks().create(DeployTask.TASK_NAME, DeployTask.class, (task) -> {
             task.setAzureWebAppExtension(azureWebAppExtension);
         });
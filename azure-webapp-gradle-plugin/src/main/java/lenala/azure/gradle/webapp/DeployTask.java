@@ -3,25 +3,42 @@ package lenala.azure.gradle.webapp;
 import lenala.azure.gradle.webapp.auth.AuthConfiguration;
 import lenala.azure.gradle.webapp.auth.AzureAuthFailureException;
 import lenala.azure.gradle.webapp.auth.AzureAuthHelper;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.Authentication;
 import lenala.azure.gradle.webapp.configuration.DeployTarget;
+import lenala.azure.gradle.webapp.configuration.Deployment;
 import lenala.azure.gradle.webapp.configuration.DeploymentSlotDeployTarget;
 import lenala.azure.gradle.webapp.configuration.WebAppDeployTarget;
+import lenala.azure.gradle.webapp.handlers.ArtifactHandler;
 import lenala.azure.gradle.webapp.handlers.HandlerFactory;
 import lenala.azure.gradle.webapp.handlers.RuntimeHandler;
+import lenala.azure.gradle.webapp.helpers.ParallelDeployer;
+import lenala.azure.gradle.webapp.helpers.PhaseMetrics;
+import lenala.azure.gradle.webapp.helpers.WarmUpPoller;
+import lenala.azure.gradle.webapp.helpers.WarmUpProbe;
 import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp;
+import com.microsoft.azure.management.appservice.WebAppBase;
+import com.microsoft.azure.management.resources.fluentcore.arm.ResourceUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskExecutionException;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
-import java.util.Collections;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.PROPERTY_MISSING_TEMPLATE;
 
@@ -36,20 +53,32 @@ public class DeployTask extends DefaultTask implements AuthConfiguration {
     private static final String WEBAPP_CREATED = "Successfully created Web App.";
     private static final String UPDATE_WEBAPP = "Updating target Web App...";
     private static final String UPDATE_WEBAPP_DONE = "Successfully updated Web App.";
-    private static final String STOP_APP = "Stopping Web App before deploying artifacts...";
-    private static final String START_APP = "Starting Web App after deploying artifacts...";
+    private static final String STOP_APP = "Stopping %s before deploying artifacts...";
+    private static final String START_APP = "Starting %s after deploying artifacts...";
     private static final String STOP_APP_DONE = "Successfully stopped Web App.";
     private static final String START_APP_DONE = "Successfully started Web App.";
+    private static final String CREATE_SLOT = "Target deployment slot doesn't exist. Creating deployment slot '%s'...";
+    private static final String CREATE_SLOT_DONE = "Successfully created deployment slot.";
+    private static final String UPDATE_SLOT = "Updating deployment slot '%s'...";
+    private static final String UPDATE_SLOT_DONE = "Successfully updated deployment slot.";
+    private static final String SWAP_SLOT = "Swapping deployment slot '%s' into production...";
+    private static final String SWAP_SLOT_DONE = "Successfully swapped deployment slot.";
+    private static final String PRODUCTION_SLOT = "production";
     private static final String SLOT_SHOULD_EXIST_NOW = "Target deployment slot still does not exist." +
             "Please check if any error message during creation";
 
     private static final String SUBSCRIPTION_ID_KEY = "lenala.azure.subscriptionId";
+    private static final String MANAGEMENT_CALLS = "Azure management API calls: %d";
+    private static final String METRICS_WRITE_FAIL = "Failed to write the metrics report: ";
+    private static final String METRICS_DIRECTORY = "azure-webapp";
+    private static final String METRICS_SUFFIX = "-metrics";
 
-    private Azure azure;
+    private volatile Azure azure;
     private AzureWebAppExtension azureWebAppExtension;
-    private WebApp app;
+    private final Map<String, WebApp> apps = new ConcurrentHashMap<>();
+    private Set<String> resourceGroups;
     private AzureAuthHelper azureAuthHelper;
-    private DeploymentUtil util = new DeploymentUtil();
+    private final PhaseMetrics metrics = new PhaseMetrics(() -> azureAuthHelper.getManagementCallCount());
 
     public void setAzureWebAppExtension(AzureWebAppExtension azureWebAppExtension) {
         this.azureWebAppExtension = azureWebAppExtension;
@@ -62,89 +91,242 @@ public class DeployTask extends DefaultTask implements AuthConfiguration {
 
     @TaskAction
     void deploy() {
+        final long managementCallCount = azureAuthHelper.getManagementCallCount();
         try {
-            getLogger().quiet(String.format(WEBAPP_DEPLOY_START, azureWebAppExtension.getAppName()));
-            createOrUpdateWebApp();
-            deployArtifacts();
-            getLogger().quiet(String.format(WEBAPP_DEPLOY_SUCCESS, azureWebAppExtension.getAppName()));
+            if (azureWebAppExtension.getTargets().isEmpty()) {
+                deployToWebApp(azureWebAppExtension.getAppTarget());
+            } else {
+                // Authenticate on the task thread, which may read project properties
+                getAzureClient();
+                final List<AppTarget> appTargets = new ArrayList<>();
+                azureWebAppExtension.getTargets()
+                        .forEach(target -> appTargets.add(target.withDefaults(azureWebAppExtension.getAppTarget())));
+                new ParallelDeployer<AppTarget>(getLogger(), azureWebAppExtension.getDeployConcurrency(),
+                        azureWebAppExtension.isFailFast()).deploy(appTargets, this::deployToWebApp);
+            }
         } catch (Exception ex) {
             throw new TaskExecutionException(this, ex);
+        } finally {
+            getLogger().quiet(String.format(MANAGEMENT_CALLS,
+                    azureAuthHelper.getManagementCallCount() - managementCallCount));
+            writeMetricsReport();
+        }
+    }
+
+    /**
+     * Write the phases measured by the task to build/azure-webapp/&lt;task name&gt;-metrics.json and .csv.
+     */
+    private void writeMetricsReport() {
+        final String baseName = Paths.get(getProject().getBuildDir().getAbsolutePath(), METRICS_DIRECTORY,
+                getName() + METRICS_SUFFIX).toString();
+        try {
+            metrics.writeJson(new File(baseName + ".json"));
+            metrics.writeCsv(new File(baseName + ".csv"));
+        } catch (IOException e) {
+            getLogger().warn(METRICS_WRITE_FAIL + e.getMessage());
+        }
+        if (azureWebAppExtension.isMetricsSummary()) {
+            metrics.logSummary(getLogger());
         }
     }
 
-    private void createOrUpdateWebApp() throws Exception {
-        final WebApp app = getWebApp();
+    public PhaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void deployToWebApp(final AppTarget target) throws Exception {
+        getLogger().quiet(String.format(WEBAPP_DEPLOY_START, target.getAppName()));
+        final WebApp app = getWebApp(target);
+        metrics.run("create/update", target.getAppName(), () -> {
+            if (app == null) {
+                createWebApp(target);
+            } else if (target.getDeploymentSlot() == null) {
+                updateWebApp(target, app);
+            }
+            // Otherwise the slot is updated before it is deployed to, and production only changes with the swap
+        });
+        deployArtifacts(target);
+        getLogger().quiet(String.format(WEBAPP_DEPLOY_SUCCESS, target.getAppName()));
+    }
+
+    /**
+     * The Web App is looked up once per task, and replaced by the result of a create or update.
+     */
+    public WebApp getWebApp(final AppTarget target) throws AzureAuthFailureException {
+        WebApp app = apps.get(getWebAppKey(target));
         if (app == null) {
-            createWebApp();
-        } else {
-            updateWebApp(app);
+            // Authenticate first, so that it is measured on its own and its failure is not swallowed
+            final Azure azureClient = getAzureClient();
+            try {
+                app = metrics.time("app lookup", target.getAppName(),
+                        () -> azureClient.webApps().getByResourceGroup(target.getResourceGroup(), target.getAppName()));
+                setWebApp(target, app);
+            } catch (Exception ex) {
+                // Swallow exception for non-existing web app
+            }
         }
+        return app;
     }
 
-    public WebApp getWebApp() throws AzureAuthFailureException {
-        try {
-            return getAzureClient().webApps().getByResourceGroup(azureWebAppExtension.getResourceGroup(), azureWebAppExtension.getAppName());
-        } catch (AzureAuthFailureException authEx) {
-            throw authEx;
-        } catch (Exception ex) {
-            // Swallow exception for non-existing web app
+    /**
+     * Look the Web App up again on next use, after it was changed other than through this task.
+     */
+    public void invalidateWebApp(final AppTarget target) {
+        apps.remove(getWebAppKey(target));
+    }
+
+    private void setWebApp(final AppTarget target, final WebApp app) {
+        if (app != null) {
+            apps.put(getWebAppKey(target), app);
+        }
+    }
+
+    private static String getWebAppKey(final AppTarget target) {
+        return target.getResourceGroup() + "/" + target.getAppName();
+    }
+
+    /**
+     * The resource groups of the subscription are listed once per task, and answer every existence check of the
+     * deploy. Resource groups created by the task are added to them.
+     */
+    public synchronized boolean isResourceGroupExist(final String resourceGroup) throws AzureAuthFailureException {
+        if (resourceGroups == null) {
+            final Set<String> names = new HashSet<>();
+            getAzureClient().resourceGroups().list().forEach(group -> names.add(group.name().toLowerCase(Locale.ENGLISH)));
+            resourceGroups = names;
         }
-        return null;
+        return resourceGroups.contains(resourceGroup.toLowerCase(Locale.ENGLISH));
     }
 
-    private void createWebApp() throws Exception {
+    private synchronized void addResourceGroup(final String resourceGroup) {
+        if (resourceGroups != null) {
+            resourceGroups.add(resourceGroup.toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    private void createWebApp(final AppTarget target) throws Exception {
         getLogger().quiet(WEBAPP_NOT_EXIST);
-        RuntimeHandler runtimeHandler = getFactory().getRuntimeHandler(this);
+        RuntimeHandler runtimeHandler = getFactory().getRuntimeHandler(this, target);
         getLogger().quiet(runtimeHandler.getClass().getName());
         final WebApp.DefinitionStages.WithCreate withCreate = runtimeHandler.defineAppWithRuntime();
         getLogger().quiet("Processing settings");
         getFactory().getSettingsHandler(getProject()).processSettings(withCreate);
         getLogger().quiet("Creating WebApp");
-        this.app = withCreate.create();
+        // Resource groups and App Service Plan defined by the runtime handler are created with the Web App,
+        // independent ones at the same time.
+        final WebApp app = withCreate.create();
+        setWebApp(target, app);
+        addResourceGroup(app.resourceGroupName());
+        addResourceGroup(ResourceUtils.groupFromResourceId(app.appServicePlanId()));
 
         getLogger().quiet(WEBAPP_CREATED);
     }
 
-    private void updateWebApp(final WebApp app) throws Exception {
+    private void updateWebApp(final AppTarget target, final WebApp app) throws Exception {
         getLogger().quiet(UPDATE_WEBAPP);
 
-        final WebApp.Update update = getFactory().getRuntimeHandler(this).updateAppRuntime(app);
+        final WebApp.Update update = getFactory().getRuntimeHandler(this, target).updateAppRuntime(app);
         getFactory().getSettingsHandler(getProject()).processSettings(update);
-        update.apply();
+        setWebApp(target, update.apply());
 
         getLogger().quiet(UPDATE_WEBAPP_DONE);
-        this.app = app;
     }
 
-    private void deployArtifacts() throws Exception {
+    private void deployArtifacts(final AppTarget appTarget) throws Exception {
+        final Deployment deployment = azureWebAppExtension.getDeployment();
+        if (deployment == null) {
+            throw new GradleException(String.format(PROPERTY_MISSING_TEMPLATE, "deployment"));
+        }
+
+        final DeployTarget<?> target;
+        final DeploymentSlot slot;
+        final String appName = appTarget.getAppName();
+        if (appTarget.getDeploymentSlot() != null) {
+            slot = metrics.time("slot", appName, () -> updateDeploymentSlot(appTarget,
+                    getOrCreateDeploymentSlot(getWebApp(appTarget), appTarget.getDeploymentSlot(), deployment)));
+            target = new DeploymentSlotDeployTarget(slot);
+        } else if (deployment.isSwapSlot()) {
+            throw new GradleException(String.format(PROPERTY_MISSING_TEMPLATE, "deployment.deploymentSlot"));
+        } else {
+            slot = null;
+            target = new WebAppDeployTarget(getWebApp(appTarget));
+        }
+
+        final DeploymentUtil util = new DeploymentUtil(target);
+        metrics.run("deploy", appName, () -> {
             try {
                 getLogger().quiet("Deploying artifacts");
                 util.beforeDeployArtifacts();
 
-                DeployTarget target;
-
-                if (azureWebAppExtension.getDeployment() == null) {
-                    throw new GradleException(String.format(PROPERTY_MISSING_TEMPLATE, "deployment"));
-                }
-
-                if (azureWebAppExtension.getDeployment().getDeploymentSlot() != null) {
-                    final String slotName = azureWebAppExtension.getDeployment().getDeploymentSlot();
-                    final DeploymentSlot slot = getDeploymentSlot(app, slotName);
-                    if (slot == null) {
-                        throw new GradleException(SLOT_SHOULD_EXIST_NOW);
-                    }
-                    target = new DeploymentSlotDeployTarget(slot);
-                } else {
-                    target = new WebAppDeployTarget(getWebApp());
-                }
-
-                if (getFactory().getArtifactHandler(this) != null) {
-                    getFactory().getArtifactHandler(this).publish(target);
+                final ArtifactHandler artifactHandler = getFactory().getArtifactHandler(this, appTarget);
+                if (artifactHandler != null) {
+                    artifactHandler.publish(target);
                 }
             } finally {
                 util.afterDeployArtifacts();
             }
+        });
+
+        final boolean swapSlot = slot != null && deployment.isSwapSlot();
+        if (swapSlot) {
+            metrics.run("slot warm-up", appName, () -> waitForDeploymentSlot(slot, deployment));
+        }
+        if (!deployment.getProbePaths().isEmpty()) {
+            final WarmUpProbe.Result result;
+            try (PhaseMetrics.Phase phase = metrics.start("warm-up", appName)) {
+                result = new WarmUpProbe(getLogger(), deployment.getProbeRequests(), deployment.getProbeConcurrency())
+                        .probe("https://" + target.getDefaultHostName(), deployment.getProbePaths());
+                phase.addRemoteCalls(result.getRequestCount());
+            }
+            WarmUpProbe.assureLatencyBudget(result, deployment.getProbeLatencyBudget());
+        }
+        if (swapSlot) {
+            metrics.run("swap", appName, () -> swapDeploymentSlot(appTarget, slot));
+        }
+    }
+
+    private DeploymentSlot getOrCreateDeploymentSlot(final WebApp app, final String slotName,
+                                                     final Deployment deployment) {
+        DeploymentSlot slot = getDeploymentSlot(app, slotName);
+        if (slot == null && deployment.isCreateSlot()) {
+            getLogger().quiet(String.format(CREATE_SLOT, slotName));
+            slot = app.deploymentSlots().define(slotName).withConfigurationFromParent().create();
+            getLogger().quiet(CREATE_SLOT_DONE);
+        }
+        if (slot == null) {
+            throw new GradleException(SLOT_SHOULD_EXIST_NOW);
         }
+        return slot;
+    }
+
+    private DeploymentSlot updateDeploymentSlot(final AppTarget target, final DeploymentSlot slot) throws Exception {
+        getLogger().quiet(String.format(UPDATE_SLOT, slot.name()));
+
+        final RuntimeHandler runtimeHandler = getFactory().getRuntimeHandler(this, target);
+        final WebAppBase.Update<DeploymentSlot> update = runtimeHandler.updateSlotRuntime(slot);
+        getFactory().getSettingsHandler(getProject()).processSettings(update);
+        final DeploymentSlot updatedSlot = update.apply();
+        runtimeHandler.updateSlotSiteConfig(updatedSlot);
+
+        getLogger().quiet(UPDATE_SLOT_DONE);
+        return updatedSlot;
+    }
+
+    /**
+     * Production only gets the new version once it answers from the slot, so that users do not see its cold start.
+     */
+    private void waitForDeploymentSlot(final DeploymentSlot slot, final Deployment deployment) {
+        new WarmUpPoller(getLogger(), deployment.getWarmUpTimeout(), deployment.getWarmUpMaxLatency(),
+                deployment.getWarmUpSuccessCount())
+                .waitUntilWarm(WarmUpProbe.getUrl("https://" + slot.defaultHostName(), deployment.getWarmUpPath()));
+    }
+
+    private void swapDeploymentSlot(final AppTarget target, final DeploymentSlot slot) {
+        getLogger().quiet(String.format(SWAP_SLOT, slot.name()));
+        slot.swap(PRODUCTION_SLOT);
+        invalidateWebApp(target);
+        getLogger().quiet(SWAP_SLOT_DONE);
+    }
 
     private DeploymentSlot getDeploymentSlot(final WebApp app, final String slotName) {
         DeploymentSlot slot = null;
@@ -157,11 +339,19 @@ public class DeployTask extends DefaultTask implements AuthConfiguration {
         return slot;
     }
 
+    /**
+     * Authenticated once per task, also when several targets are deployed to at the same time.
+     */
     public Azure getAzureClient() throws AzureAuthFailureException {
         if (azure == null) {
-            azure = azureAuthHelper.getAzureClient();
-            if (azure == null) {
-                throw new AzureAuthFailureException(AZURE_INIT_FAIL);
+            synchronized (this) {
+                if (azure == null) {
+                    final Azure azureClient = metrics.time("auth", null, azureAuthHelper::getAzureClient);
+                    if (azureClient == null) {
+                        throw new AzureAuthFailureException(AZURE_INIT_FAIL);
+                    }
+                    azure = azureClient;
+                }
             }
         }
         return azure;
@@ -204,13 +394,18 @@ public class DeployTask extends DefaultTask implements AuthConfiguration {
     }
 
     class DeploymentUtil {
+        private final DeployTarget<?> target;
         boolean isAppStopped = false;
 
+        DeploymentUtil(final DeployTarget<?> target) {
+            this.target = target;
+        }
+
         public void beforeDeployArtifacts() throws Exception {
             if (azureWebAppExtension.isStopAppDuringDeployment()) {
-                getLogger().quiet(STOP_APP);
+                getLogger().quiet(String.format(STOP_APP, target.getName()));
 
-                getWebApp().stop();
+                target.getApp().stop();
                 isAppStopped = true;
 
                 getLogger().quiet(STOP_APP_DONE);
@@ -219,9 +414,9 @@ public class DeployTask extends DefaultTask implements AuthConfiguration {
 
         public void afterDeployArtifacts() throws Exception {
             if (isAppStopped) {
-                getLogger().quiet(START_APP);
+                getLogger().quiet(String.format(START_APP, target.getName()));
 
-                getWebApp().start();
+                target.getApp().start();
                 isAppStopped = false;
 
                 getLogger().quiet(START_APP_DONE);
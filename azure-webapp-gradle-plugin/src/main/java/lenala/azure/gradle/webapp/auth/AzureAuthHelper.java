@@ -1,21 +1,27 @@
 package lenala.azure.gradle.webapp.auth;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.microsoft.azure.AzureEnvironment;
 import com.microsoft.azure.credentials.ApplicationTokenCredentials;
 import com.microsoft.azure.credentials.AzureCliCredentials;
+import com.microsoft.azure.credentials.AzureTokenCredentials;
 import lenala.azure.gradle.webapp.configuration.Authentication;
 import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.management.Azure.Authenticated;
 import com.microsoft.rest.LogLevel;
+import okhttp3.Interceptor;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.PROPERTY_MISSING_TEMPLATE;
 
@@ -34,6 +40,7 @@ public class AzureAuthHelper {
     private static final String AZURE_CLI_AUTH_FAIL = "Failed to authenticate with Azure CLI 2.0";
 
     protected AuthConfiguration config;
+    private final AtomicLong managementCallCount = new AtomicLong();
     private Logger logger = Logging.getLogger(AzureAuthHelper.class);
 
     public AzureAuthHelper(final AuthConfiguration config) {
@@ -43,12 +50,18 @@ public class AzureAuthHelper {
         this.config = config;
     }
 
+    /**
+     * @return client of this helper, authenticated with the credentials shared with the other tasks of the build using
+     * the same settings, see {@link AzureCredentialsCache}
+     */
     public Azure getAzureClient() {
-        final Authenticated auth = getAuthObj();
-        if (auth == null) {
+        final AzureTokenCredentials credentials =
+                AzureCredentialsCache.getOrCreate(getCredentialsKey(), this::getCredentials);
+        if (credentials == null) {
             return null;
         }
         try {
+            final Authenticated auth = azureConfigure().authenticate(credentials);
             final String subscriptionId = config.getSubscriptionId();
             return StringUtils.isEmpty(subscriptionId) ?
                     auth.withDefaultSubscription() :
@@ -59,6 +72,30 @@ public class AzureAuthHelper {
         return null;
     }
 
+    /**
+     * @return number of requests sent to the Azure management API by the clients of this helper
+     */
+    public long getManagementCallCount() {
+        return managementCallCount.get();
+    }
+
+    /**
+     * Hash of the settings selecting credentials, subscription and environment.
+     */
+    protected String getCredentialsKey() {
+        final Authentication authSetting = config.getAuthenticationSettings();
+        final Hasher hasher = Hashing.sha256().newHasher();
+        for (final Object value : new Object[]{config.getSubscriptionId(), authSetting.getType(),
+                authSetting.getFile(), authSetting.getClient(), authSetting.getTenant(), authSetting.getKey(),
+                authSetting.getCertificate(), authSetting.getCertificatePassword(), authSetting.getEnvironment()}) {
+            hasher.putString(value + "|", StandardCharsets.UTF_8);
+        }
+        if (authSetting.getFile() != null) {
+            hasher.putLong(new File(authSetting.getFile()).lastModified());
+        }
+        return hasher.hash().toString();
+    }
+
     protected LogLevel getLogLevel() {
         return logger.isDebugEnabled() ?
                 LogLevel.BODY_AND_HEADERS :
@@ -68,7 +105,15 @@ public class AzureAuthHelper {
     protected Azure.Configurable azureConfigure() {
         return Azure.configure()
                 .withLogLevel(getLogLevel())
-                .withUserAgent(config.getUserAgent());
+                .withUserAgent(config.getUserAgent())
+                .withInterceptor(getManagementCallCounter());
+    }
+
+    private Interceptor getManagementCallCounter() {
+        return chain -> {
+            managementCallCount.incrementAndGet();
+            return chain.proceed(chain.request());
+        };
     }
 
     protected AzureEnvironment getAzureEnvironment(String environment) {
@@ -88,8 +133,7 @@ public class AzureAuthHelper {
         }
     }
 
-    protected Authenticated getAuthObj() {
-        Authenticated auth;
+    protected AzureTokenCredentials getCredentials() {
         // check if project has Azure authentication settings in build.gradle
         // or gradle.properties or in environment variables
         final Authentication authSetting = config.getAuthenticationSettings();
@@ -99,15 +143,15 @@ public class AzureAuthHelper {
         switch (authSetting.getType()) {
             case FILE:
                 if (authSetting.getFile() != null) {
-                    return getAuthObjFromFile(new File(authSetting.getFile()));
+                    return getCredentialsFromFile(new File(authSetting.getFile()));
         } else {
                     logger.quiet("Failed to get authentication file, please make sure it is specified.");
                     return null;
         }
             case PROPERTIES:
-                return getAuthObjFromConfiguration(authSetting);
+                return getCredentialsFromConfiguration(authSetting);
             case AZURECLI:
-                return getAuthObjFromAzureCli();
+                return getCredentialsFromAzureCli();
             default:
                 logger.error("Unrecognized authentication type.");
                 return null;
@@ -115,31 +159,28 @@ public class AzureAuthHelper {
     }
 
     /**
-     * Get Authenticated object by reading app token credentials from gradle.properties
+     * Get credentials by reading app token credentials from gradle.properties
      *
-     * @return Authenticated object if configurations are correct; otherwise return null.
+     * @return credentials if configurations are correct; otherwise return null.
      */
-    private Authenticated getAuthObjFromConfiguration(final Authentication authSetting) {
+    private AzureTokenCredentials getCredentialsFromConfiguration(final Authentication authSetting) {
         final ApplicationTokenCredentials credential = getAppTokenCredentials(authSetting);
         if (credential == null) {
             logger.quiet("Authentication info for Azure is not valid.");
             return null;
         }
 
-        final Authenticated auth = azureConfigure().authenticate(credential);
-        if (auth != null) {
-            logger.quiet(AUTH_WITH_CLIENT_ID + authSetting.getClient());
-        }
-        return auth;
+        logger.quiet(AUTH_WITH_CLIENT_ID + authSetting.getClient());
+        return credential;
     }
 
     /**
-     * Get Authenticated object using file.
+     * Get credentials using file.
      *
      * @param authFile Authentication file object.
-     * @return Authenticated object of file is valid; otherwise return null.
+     * @return credentials if file is valid; otherwise return null.
      */
-    private Authenticated getAuthObjFromFile(final File authFile) {
+    private AzureTokenCredentials getCredentialsFromFile(final File authFile) {
         if (authFile == null) {
             logger.debug(String.format(PROPERTY_MISSING_TEMPLATE, "authentication.file"));
             return null;
@@ -151,11 +192,9 @@ public class AzureAuthHelper {
         }
 
         try {
-            final Authenticated auth = azureConfigure().authenticate(authFile);
-            if (auth != null) {
-                logger.quiet(AUTH_WITH_FILE + authFile.getAbsolutePath());
-            }
-            return auth;
+            final AzureTokenCredentials credentials = ApplicationTokenCredentials.fromFile(authFile);
+            logger.quiet(AUTH_WITH_FILE + authFile.getAbsolutePath());
+            return credentials;
         } catch (Exception e) {
             logger.error(AUTH_FILE_READ_FAIL + authFile.getAbsolutePath(), e);
         }
@@ -163,17 +202,15 @@ public class AzureAuthHelper {
     }
 
     /**
-     * Get Authenticated object using authentication file from Azure CLI 2.0
+     * Get credentials using authentication file from Azure CLI 2.0
      *
-     * @return Authenticated object if Azure CLI 2.0 is logged in correctly; otherwise return null.
+     * @return credentials if Azure CLI 2.0 is logged in correctly; otherwise return null.
      */
-    private Authenticated getAuthObjFromAzureCli() {
+    private AzureTokenCredentials getCredentialsFromAzureCli() {
         try {
-            final Authenticated auth = azureConfigure().authenticate(AzureCliCredentials.create());
-            if (auth != null) {
-                logger.quiet(AUTH_WITH_AZURE_CLI);
-            }
-            return auth;
+            final AzureTokenCredentials credentials = AzureCliCredentials.create();
+            logger.quiet(AUTH_WITH_AZURE_CLI);
+            return credentials;
         } catch (Exception e) {
             logger.debug(AZURE_CLI_AUTH_FAIL, e);
         }
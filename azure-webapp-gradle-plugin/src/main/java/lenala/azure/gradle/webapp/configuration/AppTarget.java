@@ -0,0 +1,73 @@
+package lenala.azure.gradle.webapp.configuration;
+
+/**
+ * One of several Web Apps the same artifact is deployed to. Settings left out are taken from the single app
+ * configuration.
+ */
+public class AppTarget {
+    private String appName;
+    private String resourceGroup;
+    private String region;
+    private String deploymentSlot;
+
+    public AppTarget() {
+    }
+
+    public AppTarget(final String appName, final String resourceGroup, final String region,
+                     final String deploymentSlot) {
+        this.appName = appName;
+        this.resourceGroup = resourceGroup;
+        this.region = region;
+        this.deploymentSlot = deploymentSlot;
+    }
+
+    /**
+     * @return a new target with the settings left out of this one taken from the defaults
+     */
+    public AppTarget withDefaults(final AppTarget defaults) {
+        return new AppTarget(appName,
+                resourceGroup == null ? defaults.getResourceGroup() : resourceGroup,
+                region == null ? defaults.getRegion() : region,
+                deploymentSlot == null ? defaults.getDeploymentSlot() : deploymentSlot);
+    }
+
+    public String getAppName() {
+        return appName;
+    }
+
+    public String getResourceGroup() {
+        return resourceGroup;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return deployment slot deployed to, or null to deploy to production
+     */
+    public String getDeploymentSlot() {
+        return deploymentSlot;
+    }
+
+    public void setAppName(String appName) {
+        this.appName = appName;
+    }
+
+    public void setResourceGroup(String resourceGroup) {
+        this.resourceGroup = resourceGroup;
+    }
+
+    public void setRegion(String region) {
+        this.region = region;
+    }
+
+    public void setDeploymentSlot(String deploymentSlot) {
+        this.deploymentSlot = deploymentSlot;
+    }
+
+    @Override
+    public String toString() {
+        return resourceGroup == null ? appName : resourceGroup + "/" + appName;
+    }
+}
@@ -1,5 +1,6 @@
 package lenala.azure.gradle.webapp.configuration;
 
+import lenala.azure.gradle.webapp.helpers.WarmUpProbe;
 import groovy.lang.Closure;
 import org.apache.commons.lang3.StringUtils;
 
@@ -13,6 +14,18 @@ public class Deployment {
     private String contextPath;
     private String deploymentSlot;
     private List<FTPResource> resources = new ArrayList<FTPResource>();
+    private boolean ftpSync;
+    private boolean ftpDeleteStale;
+    private boolean createSlot;
+    private boolean swapSlot;
+    private String warmUpPath = "/";
+    private int warmUpTimeout = 300;
+    private long warmUpMaxLatency = 2000;
+    private int warmUpSuccessCount = 3;
+    private List<String> probePaths = new ArrayList<>();
+    private int probeRequests = WarmUpProbe.DEFAULT_REQUEST_COUNT;
+    private int probeConcurrency = WarmUpProbe.DEFAULT_CONCURRENCY;
+    private long probeLatencyBudget;
 
     public DeploymentType getType() {
         return this.type;
@@ -44,6 +57,54 @@ public class Deployment {
         }
     }
 
+    public boolean isFtpSync() {
+        return ftpSync;
+    }
+
+    public boolean isFtpDeleteStale() {
+        return ftpDeleteStale;
+    }
+
+    public boolean isCreateSlot() {
+        return createSlot;
+    }
+
+    public boolean isSwapSlot() {
+        return swapSlot;
+    }
+
+    public String getWarmUpPath() {
+        return StringUtils.isEmpty(warmUpPath) ? "/" : warmUpPath;
+    }
+
+    public int getWarmUpTimeout() {
+        return warmUpTimeout;
+    }
+
+    public long getWarmUpMaxLatency() {
+        return warmUpMaxLatency;
+    }
+
+    public int getWarmUpSuccessCount() {
+        return warmUpSuccessCount;
+    }
+
+    public List<String> getProbePaths() {
+        return probePaths == null ? new ArrayList<>() : probePaths;
+    }
+
+    public int getProbeRequests() {
+        return probeRequests;
+    }
+
+    public int getProbeConcurrency() {
+        return probeConcurrency;
+    }
+
+    public long getProbeLatencyBudget() {
+        return probeLatencyBudget;
+    }
+
     public String getContextPath() {
         return StringUtils.isEmpty(this.contextPath) ? "" : this.contextPath;
     }
@@ -68,6 +129,54 @@ public class Deployment {
         this.deploymentSlot = deploymentSlot;
     }
 
+    public void setFtpSync(boolean ftpSync) {
+        this.ftpSync = ftpSync;
+    }
+
+    public void setFtpDeleteStale(boolean ftpDeleteStale) {
+        this.ftpDeleteStale = ftpDeleteStale;
+    }
+
+    public void setCreateSlot(boolean createSlot) {
+        this.createSlot = createSlot;
+    }
+
+    public void setSwapSlot(boolean swapSlot) {
+        this.swapSlot = swapSlot;
+    }
+
+    public void setWarmUpPath(String warmUpPath) {
+        this.warmUpPath = warmUpPath;
+    }
+
+    public void setWarmUpTimeout(int warmUpTimeout) {
+        this.warmUpTimeout = warmUpTimeout;
+    }
+
+    public void setWarmUpMaxLatency(long warmUpMaxLatency) {
+        this.warmUpMaxLatency = warmUpMaxLatency;
+    }
+
+    public void setWarmUpSuccessCount(int warmUpSuccessCount) {
+        this.warmUpSuccessCount = warmUpSuccessCount;
+    }
+
+    public void setProbePaths(List<String> probePaths) {
+        this.probePaths = probePaths;
+    }
+
+    public void setProbeRequests(int probeRequests) {
+        this.probeRequests = probeRequests;
+    }
+
+    public void setProbeConcurrency(int probeConcurrency) {
+        this.probeConcurrency = probeConcurrency;
+    }
+
+    public void setProbeLatencyBudget(long probeLatencyBudget) {
+        this.probeLatencyBudget = probeLatencyBudget;
+    }
+
     public void setFTPResources(List<FTPResource> resources) {
         this.resources = resources;
     }
@@ -1,6 +1,7 @@
 package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.FTPResource;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.GradleException;
@@ -16,9 +17,11 @@ public abstract class ArtifactHandlerBase implements ArtifactHandler {
     protected static final String DEPLOY_FINISH = "Successfully deployed the artifact to https://%s";
 
     protected DeployTask task;
+    protected AppTarget appTarget;
 
-    protected ArtifactHandlerBase(@Nonnull final DeployTask task) {
+    protected ArtifactHandlerBase(@Nonnull final DeployTask task, @Nonnull final AppTarget appTarget) {
         this.task = task;
+        this.appTarget = appTarget;
     }
 
     protected void assureStagingDirectoryNotEmpty() throws GradleException {
@@ -34,7 +37,7 @@ public abstract class ArtifactHandlerBase implements ArtifactHandler {
     protected String getDeploymentStagingDirectoryPath() {
         String stageDirectory = Paths.get(getBuildDirectoryAbsolutePath(),
                 "azure-webapps",
-                task.getAzureWebAppExtension().getAppName()).toString();
+                appTarget.getAppName()).toString();
         task.getLogger().quiet(stageDirectory);
         return stageDirectory;
     }
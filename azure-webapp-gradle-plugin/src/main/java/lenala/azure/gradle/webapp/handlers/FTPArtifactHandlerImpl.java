@@ -2,6 +2,7 @@ package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.AzureWebAppExtension;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.DeployTarget;
 import lenala.azure.gradle.webapp.configuration.Deployment;
 import lenala.azure.gradle.webapp.configuration.FTPResource;
@@ -24,11 +25,13 @@ public class FTPArtifactHandlerImpl implements ArtifactHandler {
     private static final int DEFAULT_MAX_RETRY_TIMES = 3;
 
     private DeployTask task;
+    private AppTarget appTarget;
     private AzureWebAppExtension azureWebAppExtension;
     private Logger logger = Logging.getLogger(FTPArtifactHandlerImpl.class);
 
-    public FTPArtifactHandlerImpl(final DeployTask task) {
+    public FTPArtifactHandlerImpl(final DeployTask task, final AppTarget appTarget) {
         this.task = task;
+        this.appTarget = appTarget;
         azureWebAppExtension = task.getAzureWebAppExtension();
     }
 
@@ -71,7 +74,7 @@ public class FTPArtifactHandlerImpl implements ArtifactHandler {
 
     private void uploadDirectoryToFTP() throws Exception {
         final FTPUploader uploader = getUploader();
-        final WebApp app = task.getWebApp();
+        final WebApp app = task.getWebApp(appTarget);
         final PublishingProfile profile = app.getPublishingProfile();
         final String serverUrl = profile.ftpUrl().split("/", 2)[0];
         uploader.uploadDirectoryWithRetries(serverUrl,
@@ -83,13 +86,15 @@ public class FTPArtifactHandlerImpl implements ArtifactHandler {
     }
 
     private FTPUploader getUploader() {
-        return new FTPUploader(logger);
+        final FTPUploader uploader = new FTPUploader(logger);
+        final Deployment deployment = azureWebAppExtension.getDeployment();
+        return deployment.isFtpSync() ? uploader.withSync(deployment.isFtpDeleteStale()) : uploader;
     }
 
     private String getDeploymentStageDirectory() {
         String stageDirectory = Paths.get(getBuildDirectoryAbsolutePath(),
                 "azure-webapps",
-                azureWebAppExtension.getAppName()).toString();
+                appTarget.getAppName()).toString();
         logger.quiet(stageDirectory);
         return stageDirectory;
     }
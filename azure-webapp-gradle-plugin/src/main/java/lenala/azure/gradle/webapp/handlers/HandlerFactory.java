@@ -1,6 +1,7 @@
 package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 
@@ -11,9 +12,9 @@ public abstract class HandlerFactory {
         return instance;
     }
 
-    public abstract RuntimeHandler getRuntimeHandler(final DeployTask task) throws GradleException;
+    public abstract RuntimeHandler getRuntimeHandler(final DeployTask task, final AppTarget target) throws GradleException;
 
     public abstract SettingsHandler getSettingsHandler(final Project project) throws GradleException;
 
-    public abstract ArtifactHandler getArtifactHandler(final DeployTask task) throws GradleException;
+    public abstract ArtifactHandler getArtifactHandler(final DeployTask task, final AppTarget target) throws GradleException;
 }
@@ -1,6 +1,7 @@
 package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.AppService;
 import lenala.azure.gradle.webapp.configuration.AppServiceType;
 import lenala.azure.gradle.webapp.configuration.Deployment;
@@ -15,18 +16,18 @@ import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.UNKNOWN_V
 
 public class HandlerFactoryImpl extends HandlerFactory {
     @Override
-    public RuntimeHandler getRuntimeHandler(final DeployTask task) throws GradleException {
+    public RuntimeHandler getRuntimeHandler(final DeployTask task, final AppTarget target) throws GradleException {
         AppService appService = task.getAzureWebAppExtension().getAppService();
         if (appService == null) {
             return new NullRuntimeHandlerImpl();
         }
 
         if (appService.getType() == AppServiceType.WINDOWS) {
-            return new WindowsRuntimeHandlerImpl(task);
+            return new WindowsRuntimeHandlerImpl(task, target);
         }
 
         if (appService.getType() == AppServiceType.LINUX) {
-            return new LinuxRuntimeHandlerImpl(task);
+            return new LinuxRuntimeHandlerImpl(task, target);
         }
 
         if (appService.getType() == AppServiceType.DOCKER) {
@@ -34,11 +35,11 @@ public class HandlerFactoryImpl extends HandlerFactory {
             task.getLogger().quiet("imageType: " + imageType);
             switch (imageType) {
                 case PUBLIC_DOCKER_HUB:
-                    return new PublicDockerHubRuntimeHandlerImpl(task);
+                    return new PublicDockerHubRuntimeHandlerImpl(task, target);
                 case PRIVATE_DOCKER_HUB:
-                    return new PrivateDockerHubRuntimeHandlerImpl(task);
+                    return new PrivateDockerHubRuntimeHandlerImpl(task, target);
                 case PRIVATE_REGISTRY:
-                    return new PrivateRegistryRuntimeHandlerImpl(task);
+                    return new PrivateRegistryRuntimeHandlerImpl(task, target);
                 case NONE:
                 default:
                     throw new GradleException(
@@ -54,7 +55,7 @@ public class HandlerFactoryImpl extends HandlerFactory {
     }
 
     @Override
-    public ArtifactHandler getArtifactHandler(final DeployTask task) throws GradleException {
+    public ArtifactHandler getArtifactHandler(final DeployTask task, final AppTarget target) throws GradleException {
         Deployment deployment = task.getAzureWebAppExtension().getDeployment();
         if (deployment == null && !AppServiceType.DOCKER.equals(task.getAzureWebAppExtension().getAppService().getType())) {
             task.getLogger().quiet("No deployment configured, exit.");
@@ -72,14 +73,14 @@ public class HandlerFactoryImpl extends HandlerFactory {
             case UNKNOWN:
                 throw new GradleException(String.format(UNKNOWN_VALUE_TEMPLATE, "deployment.type"));
             case WAR:
-                return new WarArtifactHandlerImpl(task);
+                return new WarArtifactHandlerImpl(task, target);
             case ZIP:
-                return new ZipArtifactHandlerImpl(task);
+                return new ZipArtifactHandlerImpl(task, target);
             case JAR:
-                return new JarArtifactHandlerImpl(task);
+                return new JarArtifactHandlerImpl(task, target);
             case FTP:
             default:
-                return new FTPArtifactHandlerImpl(task);
+                return new FTPArtifactHandlerImpl(task, target);
         }
     }
 }
@@ -2,6 +2,7 @@ package lenala.azure.gradle.webapp.handlers;
 
 import com.google.common.io.Files;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.AppServiceType;
 import lenala.azure.gradle.webapp.configuration.DeployTarget;
 import org.apache.commons.io.IOUtils;
@@ -34,8 +35,8 @@ public final class JarArtifactHandlerImpl extends ZipArtifactHandlerImpl {
     private static final String READ_WEB_CONFIG_TEMPLATE_FAIL = "Failed to read the content of web.config.template.";
     private static final String GENERATING_WEB_CONFIG = "Generating web.config for Web App on Windows.";
 
-    protected JarArtifactHandlerImpl(final DeployTask task) {
-        super(task);
+    protected JarArtifactHandlerImpl(final DeployTask task, final AppTarget appTarget) {
+        super(task, appTarget);
     }
 
     @Override
@@ -2,26 +2,30 @@ package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.AzureWebAppExtension;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.helpers.WebAppUtils;
-import com.microsoft.azure.management.appservice.AppServicePlan;
-import com.microsoft.azure.management.appservice.OperatingSystem;
+import com.microsoft.azure.management.appservice.DeploymentSlot;
+import com.microsoft.azure.management.appservice.RuntimeStack;
 import com.microsoft.azure.management.appservice.WebApp;
+import com.microsoft.azure.management.appservice.WebAppBase;
 import org.gradle.api.GradleException;
 
+import java.util.Collections;
+
 public class LinuxRuntimeHandlerImpl implements RuntimeHandler {
     private DeployTask task;
+    private AppTarget target;
     private AzureWebAppExtension extension;
 
-    public LinuxRuntimeHandlerImpl(final DeployTask task) {
+    public LinuxRuntimeHandlerImpl(final DeployTask task, final AppTarget target) {
         this.task = task;
+        this.target = target;
         this.extension = task.getAzureWebAppExtension();
     }
 
     @Override
     public WebApp.DefinitionStages.WithCreate defineAppWithRuntime() throws Exception {
-        final AppServicePlan plan = WebAppUtils.createOrGetAppServicePlan(task, OperatingSystem.LINUX);
-
-        return WebAppUtils.defineLinuxApp(task, plan).withBuiltInImage(
+        return WebAppUtils.defineLinuxApp(task, target).withBuiltInImage(
                 WebAppUtils.getLinuxRuntimeStackFromString(extension.getAppService().getRuntimeStack()));
     }
 
@@ -31,4 +35,18 @@ public class LinuxRuntimeHandlerImpl implements RuntimeHandler {
         return app.update().withBuiltInImage(
                 WebAppUtils.getLinuxRuntimeStackFromString(extension.getAppService().getRuntimeStack()));
     }
+
+    @Override
+    public WebAppBase.Update<DeploymentSlot> updateSlotRuntime(final DeploymentSlot slot) throws GradleException {
+        // Fail before anything is changed if the runtime stack is not known
+        WebAppUtils.getLinuxRuntimeStackFromString(extension.getAppService().getRuntimeStack());
+        return WebAppUtils.updateSlotContainerSettings(slot, Collections.emptyMap());
+    }
+
+    @Override
+    public void updateSlotSiteConfig(final DeploymentSlot slot) throws GradleException {
+        final RuntimeStack runtimeStack =
+                WebAppUtils.getLinuxRuntimeStackFromString(extension.getAppService().getRuntimeStack());
+        WebAppUtils.updateSlotLinuxFxVersion(slot, runtimeStack.stack() + "|" + runtimeStack.version());
+    }
 }
@@ -1,6 +1,8 @@
 package lenala.azure.gradle.webapp.handlers;
 
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp;
+import com.microsoft.azure.management.appservice.WebAppBase;
 import com.microsoft.azure.management.appservice.WebApp.DefinitionStages.WithCreate;
 import com.microsoft.azure.management.appservice.WebApp.Update;
 import org.gradle.api.GradleException;
@@ -17,4 +19,13 @@ public class NullRuntimeHandlerImpl implements RuntimeHandler {
     public Update updateAppRuntime(final WebApp app) throws Exception {
         return app.update();
     }
+
+    @Override
+    public WebAppBase.Update<DeploymentSlot> updateSlotRuntime(final DeploymentSlot slot) throws Exception {
+        return slot.update();
+    }
+
+    @Override
+    public void updateSlotSiteConfig(final DeploymentSlot slot) throws Exception {
+    }
 }
@@ -2,21 +2,27 @@ package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.AzureWebAppExtension;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.AppService;
 import lenala.azure.gradle.webapp.helpers.WebAppUtils;
-import com.microsoft.azure.management.appservice.AppServicePlan;
-import com.microsoft.azure.management.appservice.OperatingSystem;
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp;
+import com.microsoft.azure.management.appservice.WebAppBase;
 import com.microsoft.azure.management.appservice.WebApp.DefinitionStages.WithCreate;
 import com.microsoft.azure.management.appservice.WebApp.Update;
 import org.gradle.api.GradleException;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class PrivateRegistryRuntimeHandlerImpl implements RuntimeHandler {
     private DeployTask task;
+    private AppTarget target;
     private AzureWebAppExtension extension;
 
-    public PrivateRegistryRuntimeHandlerImpl(final DeployTask task) {
+    public PrivateRegistryRuntimeHandlerImpl(final DeployTask task, final AppTarget target) {
         this.task = task;
+        this.target = target;
         this.extension = task.getAzureWebAppExtension();
     }
 
@@ -24,8 +30,7 @@ public class PrivateRegistryRuntimeHandlerImpl implements RuntimeHandler {
     public WithCreate defineAppWithRuntime() throws Exception {
         final AppService appService = extension.getAppService();
         WebAppUtils.assureDockerSettingsValid(appService);
-        final AppServicePlan plan = WebAppUtils.createOrGetAppServicePlan(task, OperatingSystem.LINUX);
-        return WebAppUtils.defineLinuxApp(task, plan)
+        return WebAppUtils.defineLinuxApp(task, target)
                 .withPrivateRegistryImage(appService.getImageName(), appService.getRegistryUrl())
                 .withCredentials(appService.getUsername(), appService.getPassword());
     }
@@ -39,4 +44,22 @@ public class PrivateRegistryRuntimeHandlerImpl implements RuntimeHandler {
                 .withPrivateRegistryImage(appService.getImageName(), appService.getRegistryUrl())
                 .withCredentials(appService.getUsername(), appService.getPassword());
     }
+
+    @Override
+    public WebAppBase.Update<DeploymentSlot> updateSlotRuntime(final DeploymentSlot slot) throws GradleException {
+        final AppService appService = extension.getAppService();
+        WebAppUtils.assureDockerSettingsValid(appService);
+        final Map<String, String> containerSettings = new HashMap<>();
+        containerSettings.put(WebAppUtils.DOCKER_CUSTOM_IMAGE_NAME, appService.getImageName());
+        containerSettings.put(WebAppUtils.DOCKER_REGISTRY_SERVER_URL, appService.getRegistryUrl());
+        containerSettings.put(WebAppUtils.DOCKER_REGISTRY_SERVER_USERNAME, appService.getUsername());
+        containerSettings.put(WebAppUtils.DOCKER_REGISTRY_SERVER_PASSWORD, appService.getPassword());
+        return WebAppUtils.updateSlotContainerSettings(slot, containerSettings);
+    }
+
+    @Override
+    public void updateSlotSiteConfig(final DeploymentSlot slot) throws GradleException {
+        WebAppUtils.updateSlotLinuxFxVersion(slot,
+                WebAppUtils.DOCKER_IMAGE_PREFIX + extension.getAppService().getImageName());
+    }
 }
@@ -2,29 +2,33 @@ package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.AzureWebAppExtension;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.AppService;
 import lenala.azure.gradle.webapp.helpers.WebAppUtils;
-import com.microsoft.azure.management.appservice.AppServicePlan;
-import com.microsoft.azure.management.appservice.OperatingSystem;
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp;
+import com.microsoft.azure.management.appservice.WebAppBase;
 import com.microsoft.azure.management.appservice.WebApp.DefinitionStages.WithCreate;
 import com.microsoft.azure.management.appservice.WebApp.Update;
 import org.gradle.api.GradleException;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class PublicDockerHubRuntimeHandlerImpl implements RuntimeHandler {
     private DeployTask task;
+    private AppTarget target;
     private AzureWebAppExtension extension;
 
-    public PublicDockerHubRuntimeHandlerImpl(DeployTask task) {
+    public PublicDockerHubRuntimeHandlerImpl(final DeployTask task, final AppTarget target) {
         this.task = task;
+        this.target = target;
         this.extension = task.getAzureWebAppExtension();
     }
 
     @Override
     public WithCreate defineAppWithRuntime() throws Exception {
-        final AppServicePlan plan = WebAppUtils.createOrGetAppServicePlan(task, OperatingSystem.LINUX);
-
-        return WebAppUtils.defineLinuxApp(task, plan)
+        return WebAppUtils.defineLinuxApp(task, target)
                 .withPublicDockerHubImage(extension.getAppService().getImageName());
     }
 
@@ -34,4 +38,18 @@ public class PublicDockerHubRuntimeHandlerImpl implements RuntimeHandler {
         final AppService appService = extension.getAppService();
         return app.update().withPublicDockerHubImage(appService.getImageName());
     }
+
+    @Override
+    public WebAppBase.Update<DeploymentSlot> updateSlotRuntime(final DeploymentSlot slot) throws GradleException {
+        final AppService appService = extension.getAppService();
+        final Map<String, String> containerSettings = new HashMap<>();
+        containerSettings.put(WebAppUtils.DOCKER_CUSTOM_IMAGE_NAME, appService.getImageName());
+        return WebAppUtils.updateSlotContainerSettings(slot, containerSettings);
+    }
+
+    @Override
+    public void updateSlotSiteConfig(final DeploymentSlot slot) throws GradleException {
+        WebAppUtils.updateSlotLinuxFxVersion(slot,
+                WebAppUtils.DOCKER_IMAGE_PREFIX + extension.getAppService().getImageName());
+    }
 }
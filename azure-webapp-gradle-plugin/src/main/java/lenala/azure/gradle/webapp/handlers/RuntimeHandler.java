@@ -1,11 +1,24 @@
 package lenala.azure.gradle.webapp.handlers;
 
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp;
 import com.microsoft.azure.management.appservice.WebApp.DefinitionStages.WithCreate;
 import com.microsoft.azure.management.appservice.WebApp.Update;
+import com.microsoft.azure.management.appservice.WebAppBase;
 
 public interface RuntimeHandler {
     WithCreate defineAppWithRuntime() throws Exception;
 
     Update updateAppRuntime(final WebApp app) throws Exception;
+
+    /**
+     * Update the runtime of the deployment slot only, production takes it over with the swap.
+     */
+    WebAppBase.Update<DeploymentSlot> updateSlotRuntime(final DeploymentSlot slot) throws Exception;
+
+    /**
+     * Update the part of the slot's runtime which slot updates cannot change, once the update returned by
+     * {@link #updateSlotRuntime} is applied, so a failed update leaves the slot's image as it was.
+     */
+    void updateSlotSiteConfig(final DeploymentSlot slot) throws Exception;
 }
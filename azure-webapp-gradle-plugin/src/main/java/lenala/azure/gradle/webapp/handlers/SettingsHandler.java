@@ -1,11 +1,15 @@
 package lenala.azure.gradle.webapp.handlers;
 
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp.DefinitionStages.WithCreate;
 import com.microsoft.azure.management.appservice.WebApp.Update;
+import com.microsoft.azure.management.appservice.WebAppBase;
 import org.gradle.api.GradleException;
 
 public interface SettingsHandler {
     void processSettings(final WithCreate withCreate) throws GradleException;
 
     void processSettings(final Update update) throws GradleException;
+
+    void processSettings(final WebAppBase.Update<DeploymentSlot> update) throws GradleException;
 }
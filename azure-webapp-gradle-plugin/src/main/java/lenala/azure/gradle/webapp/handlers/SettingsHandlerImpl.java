@@ -1,7 +1,9 @@
 package lenala.azure.gradle.webapp.handlers;
 
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp.DefinitionStages.WithCreate;
 import com.microsoft.azure.management.appservice.WebApp.Update;
+import com.microsoft.azure.management.appservice.WebAppBase;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 
@@ -25,6 +27,14 @@ public class SettingsHandlerImpl implements SettingsHandler {
 //        final Map appSettings = mojo.getAppSettings();
 //        if (appSettings != null && !appSettings.isEmpty()) {
 //            update.withAppSettings(appSettings);
+//        }
+    }
+
+    @Override
+    public void processSettings(WebAppBase.Update<DeploymentSlot> update) throws GradleException {
+//        final Map appSettings = mojo.getAppSettings();
+//        if (appSettings != null && !appSettings.isEmpty()) {
+//            update.withAppSettings(appSettings);
 //        }
     }
 }
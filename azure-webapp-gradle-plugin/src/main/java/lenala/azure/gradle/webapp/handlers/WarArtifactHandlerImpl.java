@@ -2,6 +2,7 @@ package lenala.azure.gradle.webapp.handlers;
 
 import com.google.common.io.Files;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.DeployTarget;
 import lenala.azure.gradle.webapp.configuration.Deployment;
 import org.apache.commons.lang3.StringUtils;
@@ -17,9 +18,11 @@ public class WarArtifactHandlerImpl implements ArtifactHandler {
             "Failed to deploy the war file to server, retrying immediately (%d/%d)";
 
     private DeployTask task;
+    private AppTarget appTarget;
 
-    public WarArtifactHandlerImpl(final DeployTask task) {
+    public WarArtifactHandlerImpl(final DeployTask task, final AppTarget appTarget) {
         this.task = task;
+        this.appTarget = appTarget;
     }
 
     @Override
@@ -42,7 +45,7 @@ public class WarArtifactHandlerImpl implements ArtifactHandler {
         task.getLogger().quiet("Starting to deploy the war file...");
         while (retryCount++ < DEFAULT_MAX_RETRY_TIMES) {
             try {
-                task.getWebApp().warDeploy(targetFile, contextPath);
+                task.getWebApp(appTarget).warDeploy(targetFile, contextPath);
                 return;
             } catch (Exception e) {
                 task.getLogger().quiet(String.format(UPLOAD_FAILURE, retryCount, DEFAULT_MAX_RETRY_TIMES));
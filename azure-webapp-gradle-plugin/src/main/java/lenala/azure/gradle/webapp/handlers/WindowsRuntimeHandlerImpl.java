@@ -2,10 +2,11 @@ package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.AzureWebAppExtension;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.helpers.WebAppUtils;
-import com.microsoft.azure.management.appservice.AppServicePlan;
-import com.microsoft.azure.management.appservice.OperatingSystem;
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.WebApp;
+import com.microsoft.azure.management.appservice.WebAppBase;
 import com.microsoft.azure.management.appservice.WebApp.DefinitionStages.WithCreate;
 import com.microsoft.azure.management.appservice.WebApp.Update;
 import org.gradle.api.GradleException;
@@ -14,17 +15,18 @@ import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.PROPERTY_
 
 public class WindowsRuntimeHandlerImpl implements RuntimeHandler {
     private DeployTask task;
+    private AppTarget target;
     private AzureWebAppExtension extension;
 
-    public WindowsRuntimeHandlerImpl(final DeployTask task) {
+    public WindowsRuntimeHandlerImpl(final DeployTask task, final AppTarget target) {
         this.task = task;
+        this.target = target;
         this.extension = task.getAzureWebAppExtension();
     }
 
     @Override
     public WithCreate defineAppWithRuntime() throws Exception {
-        final AppServicePlan plan = WebAppUtils.createOrGetAppServicePlan(task, OperatingSystem.WINDOWS);
-        final WithCreate withCreate = WebAppUtils.defineWindowsApp(task, plan);
+        final WithCreate withCreate = WebAppUtils.defineWindowsApp(task, target);
 
         if (extension.getAppService().getJavaVersion() == null) {
             throw new GradleException(String.format(PROPERTY_MISSING_TEMPLATE, "appService.javaVersion"));
@@ -48,4 +50,24 @@ public class WindowsRuntimeHandlerImpl implements RuntimeHandler {
                 .withWebContainer(extension.getAppService().getJavaWebContainer());
         return update;
     }
+
+    @Override
+    public WebAppBase.Update<DeploymentSlot> updateSlotRuntime(final DeploymentSlot slot) {
+        WebAppUtils.assureWindowsWebApp(slot);
+
+        if (extension.getAppService().getJavaVersion() == null) {
+            throw new GradleException(String.format(PROPERTY_MISSING_TEMPLATE, "appService.javaVersion"));
+        }
+
+        return slot.update()
+                .withJavaVersion(extension.getAppService().getJavaVersion())
+                .withWebContainer(extension.getAppService().getJavaWebContainer());
+    }
+
+    /**
+     * Java version and web container are set by the slot update.
+     */
+    @Override
+    public void updateSlotSiteConfig(final DeploymentSlot slot) {
+    }
 }
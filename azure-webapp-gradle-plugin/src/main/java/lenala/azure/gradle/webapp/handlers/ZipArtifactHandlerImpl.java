@@ -1,6 +1,7 @@
 package lenala.azure.gradle.webapp.handlers;
 
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.DeployTarget;
 import org.gradle.api.GradleException;
 import org.zeroturnaround.zip.ZipUtil;
@@ -11,8 +12,8 @@ import java.io.IOException;
 public class ZipArtifactHandlerImpl extends ArtifactHandlerBase {
     private static final int DEFAULT_MAX_RETRY_TIMES = 3;
 
-    public ZipArtifactHandlerImpl(final DeployTask task) {
-        super(task);
+    public ZipArtifactHandlerImpl(final DeployTask task, final AppTarget appTarget) {
+        super(task, appTarget);
     }
 
     @Override
@@ -1,15 +1,47 @@
 package lenala.azure.gradle.webapp.helpers;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPReply;
 import org.gradle.api.GradleException;
 import org.gradle.api.logging.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utility class to upload directory to FTP server.
@@ -17,7 +49,7 @@ import java.nio.file.Paths;
 public class FTPUploader {
     public static final String UPLOAD_START = "Starting uploading files to FTP server: ";
     public static final String UPLOAD_SUCCESS = "Successfully uploaded files to FTP server: ";
-    public static final String UPLOAD_FAILURE = "Failed to upload files to FTP server, retrying immediately (%d/%d)";
+    public static final String UPLOAD_FAILURE = "Failed to upload files to FTP server, retrying in %d ms (%d/%d)";
     public static final String UPLOAD_RETRY_FAILURE = "Failed to upload files to FTP server after %d retries...";
     public static final String UPLOAD_DIR_START = "Starting uploading directory: %s --> %s";
     public static final String UPLOAD_DIR_FINISH = "Finished uploading directory: %s --> %s";
@@ -25,15 +57,64 @@ public class FTPUploader {
     public static final String UPLOAD_DIR = "%s[DIR] %s --> %s";
     public static final String UPLOAD_FILE = "%s[FILE] %s --> %s";
     public static final String UPLOAD_FILE_REPLY = "%s.......Reply Message : %s";
+    public static final String UPLOAD_FILE_FAILURE = "%sFailed to upload %s, retrying in %d ms (%d/%d): %s";
+    public static final String UPLOAD_FILE_RESUME = "%s[RESUME] %s at byte %d";
+    public static final String UPLOAD_FILE_RENAME = "%s[RENAME] %s --> %s";
+    public static final String UPLOAD_WORKERS_RUNNING = "Upload connections still busy %d s after the upload " +
+            "stopped, closing them";
+    public static final String UPLOAD_JOURNAL_RESUME = "Continuing previous upload, %d file(s) already uploaded";
+
+    private static final String SYNC_START = "Synchronizing with %s: %d of %d file(s) new or changed";
+    private static final String SYNC_LISTING_UNAVAILABLE = "Remote directory listing unavailable, comparing with " +
+            "the manifest only: ";
+    private static final String SYNC_DELETE_FILE = "[DELETE] %s";
+    private static final String MANIFEST_SUFFIX = ".ftp-manifest.json";
+    private static final String JOURNAL_SUFFIX = ".ftp-journal";
+    private static final String PART_SUFFIX = ".%s.part";
+
+    private static final int MAX_FILE_RETRY_COUNT = 3;
+    private static final long RETRY_BASE_DELAY_MILLIS = 1000;
+    private static final long RETRY_MAX_DELAY_MILLIS = 30000;
+    private static final long RESUME_MIN_SIZE = 1024 * 1024;
+    private static final long WORKER_TERMINATION_SECONDS = 30;
+
+    public static final int DEFAULT_CONNECTION_COUNT = 4;
 
     private final Logger logger;
+    private final int connectionCount;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private boolean sync;
+    private boolean deleteStale;
 
     public FTPUploader(Logger logger) {
+        this(logger, DEFAULT_CONNECTION_COUNT);
+    }
+
+    /**
+     * @param connectionCount maximum number of connections uploading files at the same time
+     */
+    public FTPUploader(Logger logger, int connectionCount) {
         this.logger = logger;
+        this.connectionCount = Math.max(1, connectionCount);
+    }
+
+    /**
+     * Only upload new and changed files. What was uploaded is recorded in a manifest next to the target directory,
+     * e.g. '/site/wwwroot.ftp-manifest.json', so it is not served. Files are compared by hash against the
+     * manifest and, when the server supports MLSD, by size against the remote files.
+     *
+     * @param deleteStale delete remote files recorded in the manifest which no longer exist locally
+     */
+    public FTPUploader withSync(final boolean deleteStale) {
+        this.sync = true;
+        this.deleteStale = deleteStale;
+        return this;
     }
 
     /**
      * Upload directory to specified FTP server with retries.
+     * Single files are retried on their own first. Files uploaded by a failed attempt are recorded in a journal
+     * next to the source directory, so the next attempt, or the next build, only uploads the remaining files.
      *
      * @param ftpServer
      * @param username
@@ -53,8 +134,15 @@ public class FTPUploader {
             if (uploadDirectory(ftpServer, username, password, sourceDirectory, targetDirectory)) {
                 logger.quiet(UPLOAD_SUCCESS + ftpServer);
                 return;
-            } else {
-                logger.warn(String.format(UPLOAD_FAILURE, retryCount, maxRetryCount));
+            } else if (retryCount < maxRetryCount) {
+                final long delay = getRetryDelay(retryCount);
+                logger.warn(String.format(UPLOAD_FAILURE, delay, retryCount, maxRetryCount));
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
         }
         // Reaching here means all retries failed.
@@ -63,6 +151,7 @@ public class FTPUploader {
 
     /**
      * Upload directory to specified FTP server without retries.
+     * Remote directories are created once, up front, then files are spread over a pool of connections.
      *
      * @param ftpServer
      * @param username
@@ -74,62 +163,399 @@ public class FTPUploader {
     protected boolean uploadDirectory(final String ftpServer, final String username, final String password,
                                       final String sourceDirectoryPath, final String targetDirectoryPath) {
         logger.debug("FTP username: " + username);
+        // Workers replace the client of their partition when they reconnect
+        final List<FTPClient> ftpClients = Collections.synchronizedList(new ArrayList<>());
+        final UploadJournal journal = new UploadJournal(getJournalFile(ftpServer, username, sourceDirectoryPath,
+                targetDirectoryPath), ftpServer + targetDirectoryPath);
         try {
+            logger.quiet(String.format(UPLOAD_DIR_START, sourceDirectoryPath, targetDirectoryPath));
+            final List<File> files = new ArrayList<>();
+            final Set<String> directories = new LinkedHashSet<>();
+            listDirectory(new File(sourceDirectoryPath), targetDirectoryPath, directories, files);
+
             final FTPClient ftpClient = getFTPClient(ftpServer, username, password);
+            ftpClients.add(ftpClient);
 
-            logger.quiet(String.format(UPLOAD_DIR_START, sourceDirectoryPath, targetDirectoryPath));
-            uploadDirectory(ftpClient, sourceDirectoryPath, targetDirectoryPath, "");
-            logger.quiet(String.format(UPLOAD_DIR_FINISH, sourceDirectoryPath, targetDirectoryPath));
+            List<File> filesToUpload = files;
+            Map<String, ManifestEntry> manifest = null;
+            Map<String, ManifestEntry> previousManifest = null;
+            if (sync) {
+                manifest = buildManifest(sourceDirectoryPath, files);
+                previousManifest = readManifest(ftpClient, targetDirectoryPath);
+                final Map<String, Long> remoteSizes = listRemoteSizes(ftpClient, targetDirectoryPath, directories);
+                filesToUpload = getChangedFiles(sourceDirectoryPath, files, manifest, previousManifest, remoteSizes);
+                logger.quiet(String.format(SYNC_START, targetDirectoryPath, filesToUpload.size(), files.size()));
+            }
+            if (journal.load() > 0) {
+                final List<File> remainingFiles = new ArrayList<>();
+                for (final File file : filesToUpload) {
+                    if (!journal.contains(getRelativePath(sourceDirectoryPath, file), file)) {
+                        remainingFiles.add(file);
+                    }
+                }
+                logger.quiet(String.format(UPLOAD_JOURNAL_RESUME, filesToUpload.size() - remainingFiles.size()));
+                filesToUpload = remainingFiles;
+            }
 
-            ftpClient.disconnect();
+            makeDirectories(ftpClient, directories);
+
+            final List<List<File>> partitions = partitionBySize(filesToUpload,
+                    Math.max(1, Math.min(connectionCount, filesToUpload.size())));
+            while (ftpClients.size() < partitions.size()) {
+                ftpClients.add(getFTPClient(ftpServer, username, password));
+            }
+            uploadPartitions(ftpClients, partitions, ftpServer, username, password, sourceDirectoryPath,
+                    targetDirectoryPath, journal);
+
+            if (sync) {
+                // The first client may have been replaced by a retry of its partition
+                final FTPClient syncClient = ftpClients.get(0);
+                if (deleteStale) {
+                    deleteStaleFiles(syncClient, targetDirectoryPath, manifest, previousManifest);
+                } else {
+                    // Files left in place stay in the manifest, so a later sync can still delete them
+                    previousManifest.forEach(manifest::putIfAbsent);
+                }
+                writeManifest(syncClient, targetDirectoryPath, manifest);
+            }
+            journal.delete();
+            logger.quiet(String.format(UPLOAD_DIR_FINISH, sourceDirectoryPath, targetDirectoryPath));
             return true;
         } catch (Exception e) {
             logger.error(String.format(UPLOAD_DIR_FAILURE, sourceDirectoryPath, targetDirectoryPath), e);
+        } finally {
+            journal.close();
+            synchronized (ftpClients) {
+                ftpClients.forEach(this::disconnect);
+            }
         }
 
         return false;
     }
 
     /**
-     * Recursively upload a directory to FTP server with the provided FTP client object.
-     *
-     * @param sourceDirectoryPath
-     * @param targetDirectoryPath
-     * @param logPrefix
-     * @throws IOException
+     * Collect remote directories, parents first, and local files of a directory tree.
      */
-    protected void uploadDirectory(final FTPClient ftpClient, final String sourceDirectoryPath,
-                                   final String targetDirectoryPath, final String logPrefix) throws IOException {
-        logger.quiet(String.format(UPLOAD_DIR, logPrefix, sourceDirectoryPath, targetDirectoryPath));
-        final File sourceDirectory = new File(sourceDirectoryPath);
-        final File[] files = sourceDirectory.listFiles();
-        if (files == null || files.length == 0) {
-            logger.quiet(String.format("%sEmpty directory at %s", logPrefix, sourceDirectoryPath));
+    private void listDirectory(final File sourceDirectory, final String targetDirectoryPath,
+                               final Set<String> directories, final List<File> files) {
+        logger.quiet(String.format(UPLOAD_DIR, "", sourceDirectory.getAbsolutePath(), targetDirectoryPath));
+        directories.add(targetDirectoryPath);
+        final File[] children = sourceDirectory.listFiles();
+        if (children == null || children.length == 0) {
+            logger.quiet(String.format("Empty directory at %s", sourceDirectory.getAbsolutePath()));
             return;
         }
+        for (final File child : children) {
+            if (child.isFile()) {
+                files.add(child);
+            } else {
+                listDirectory(child, targetDirectoryPath + "/" + child.getName(), directories, files);
+            }
+        }
+    }
 
-        // Make sure target directory exists
-        final boolean isTargetDirectoryExist = ftpClient.changeWorkingDirectory(targetDirectoryPath);
-        if (!isTargetDirectoryExist) {
-            ftpClient.makeDirectory(targetDirectoryPath);
+    private void makeDirectories(final FTPClient ftpClient, final Set<String> directories) throws IOException {
+        for (final String directory : directories) {
+            // Fails harmlessly when the directory exists
+            ftpClient.makeDirectory(directory);
         }
+    }
 
-        final String nextLevelPrefix = logPrefix + "..";
-        for (File file : files) {
-            if (file.isFile()) {
-                uploadFile(ftpClient, file.getAbsolutePath(), targetDirectoryPath, nextLevelPrefix);
-            } else {
-                uploadDirectory(ftpClient, Paths.get(sourceDirectoryPath, file.getName()).toString(),
-                        targetDirectoryPath + "/" + file.getName(), nextLevelPrefix);
+    private Map<String, ManifestEntry> buildManifest(final String sourceDirectoryPath, final List<File> files)
+            throws IOException {
+        final Map<String, ManifestEntry> manifest = new TreeMap<>();
+        for (final File file : files) {
+            final ManifestEntry entry = new ManifestEntry();
+            entry.size = file.length();
+            entry.hash = Files.asByteSource(file).hash(Hashing.sha256()).toString();
+            manifest.put(getRelativePath(sourceDirectoryPath, file), entry);
+        }
+        return manifest;
+    }
+
+    private Map<String, ManifestEntry> readManifest(final FTPClient ftpClient, final String targetDirectoryPath) {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try {
+            if (ftpClient.retrieveFile(targetDirectoryPath + MANIFEST_SUFFIX, os)) {
+                return objectMapper.readValue(os.toByteArray(), new TypeReference<Map<String, ManifestEntry>>() {
+                });
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to read FTP manifest: " + e.getMessage());
+        }
+        return Collections.emptyMap();
+    }
+
+    private void writeManifest(final FTPClient ftpClient, final String targetDirectoryPath,
+                               final Map<String, ManifestEntry> manifest) throws IOException {
+        try (final InputStream is = new ByteArrayInputStream(objectMapper.writeValueAsBytes(manifest))) {
+            if (!ftpClient.storeFile(targetDirectoryPath + MANIFEST_SUFFIX, is)) {
+                throw new IOException("Failed to save FTP manifest: " + ftpClient.getReplyString());
+            }
+        }
+    }
+
+    /**
+     * @return sizes of the remote files by path relative to the target directory, or null if the server does not
+     * support MLSD
+     */
+    private Map<String, Long> listRemoteSizes(final FTPClient ftpClient, final String targetDirectoryPath,
+                                              final Set<String> directories) {
+        final Map<String, Long> remoteSizes = new HashMap<>();
+        try {
+            for (final String directory : directories) {
+                for (final FTPFile remoteFile : ftpClient.mlistDir(directory)) {
+                    if (remoteFile.isFile()) {
+                        final String remotePath = directory + "/" + remoteFile.getName();
+                        remoteSizes.put(remotePath.substring(targetDirectoryPath.length() + 1), remoteFile.getSize());
+                    }
+                }
+                if (!FTPReply.isPositiveCompletion(ftpClient.getReplyCode()) &&
+                        directory.equals(targetDirectoryPath)) {
+                    logger.quiet(SYNC_LISTING_UNAVAILABLE + ftpClient.getReplyString());
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            logger.quiet(SYNC_LISTING_UNAVAILABLE + e.getMessage());
+            return null;
+        }
+        return remoteSizes;
+    }
+
+    private List<File> getChangedFiles(final String sourceDirectoryPath, final List<File> files,
+                                       final Map<String, ManifestEntry> manifest,
+                                       final Map<String, ManifestEntry> previousManifest,
+                                       final Map<String, Long> remoteSizes) {
+        final List<File> changedFiles = new ArrayList<>();
+        for (final File file : files) {
+            final String relativePath = getRelativePath(sourceDirectoryPath, file);
+            final ManifestEntry entry = manifest.get(relativePath);
+            final ManifestEntry previousEntry = previousManifest.get(relativePath);
+            final boolean unchanged = previousEntry != null && entry.hash.equals(previousEntry.hash) &&
+                    (remoteSizes == null || Long.valueOf(entry.size).equals(remoteSizes.get(relativePath)));
+            if (!unchanged) {
+                changedFiles.add(file);
+            }
+        }
+        return changedFiles;
+    }
+
+    private void deleteStaleFiles(final FTPClient ftpClient, final String targetDirectoryPath,
+                                  final Map<String, ManifestEntry> manifest,
+                                  final Map<String, ManifestEntry> previousManifest) throws IOException {
+        for (final String relativePath : previousManifest.keySet()) {
+            if (!manifest.containsKey(relativePath)) {
+                final String remotePath = targetDirectoryPath + "/" + relativePath;
+                logger.quiet(String.format(SYNC_DELETE_FILE, remotePath));
+                ftpClient.deleteFile(remotePath);
             }
         }
     }
 
+    /**
+     * One journal per target, as the same directory may be uploaded to several targets at the same time.
+     */
+    private static File getJournalFile(final String ftpServer, final String username,
+                                       final String sourceDirectoryPath, final String targetDirectoryPath) {
+        final String target = Hashing.sha256().hashString(ftpServer + "|" + username + "|" + targetDirectoryPath,
+                StandardCharsets.UTF_8).toString();
+        return new File(sourceDirectoryPath + "." + target.substring(0, 12) + JOURNAL_SUFFIX);
+    }
+
+    private static String getRelativePath(final String sourceDirectoryPath, final File file) {
+        return Paths.get(sourceDirectoryPath).relativize(file.toPath()).toString().replace('\\', '/');
+    }
+
+    /**
+     * Largest files first, each to the connection with the least bytes assigned so far.
+     */
+    private static List<List<File>> partitionBySize(final List<File> files, final int partitionCount) {
+        final List<List<File>> partitions = new ArrayList<>();
+        final long[] sizes = new long[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        final List<File> sortedFiles = new ArrayList<>(files);
+        sortedFiles.sort(Comparator.comparingLong(File::length).reversed());
+        for (final File file : sortedFiles) {
+            int smallest = 0;
+            for (int i = 1; i < partitionCount; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            partitions.get(smallest).add(file);
+            sizes[smallest] += file.length();
+        }
+        return partitions;
+    }
+
+    private void uploadPartitions(final List<FTPClient> ftpClients, final List<List<File>> partitions,
+                                  final String ftpServer, final String username, final String password,
+                                  final String sourceDirectoryPath, final String targetDirectoryPath,
+                                  final UploadJournal journal) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < partitions.size(); i++) {
+                final int index = i;
+                final List<File> partition = partitions.get(i);
+                final String logPrefix = String.format("[%d]..", i);
+                futures.add(executor.submit(() -> {
+                    for (final File file : partition) {
+                        final String relativePath = getRelativePath(sourceDirectoryPath, file);
+                        uploadFileWithRetries(ftpClients, index, ftpServer, username, password, file,
+                                targetDirectoryPath + "/" + relativePath, logPrefix);
+                        journal.record(relativePath, file);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } finally {
+            // Wait for the other partitions to stop, so their connections can be closed and no upload overlaps
+            // with the next attempt
+            executor.shutdownNow();
+            if (!executor.awaitTermination(WORKER_TERMINATION_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn(String.format(UPLOAD_WORKERS_RUNNING, WORKER_TERMINATION_SECONDS));
+            }
+        }
+    }
+
+    /**
+     * Retry a single file with a new connection of the same partition, as the failed one may be broken.
+     * Large files are uploaded to a temporary name unique to this upload, and renamed into place when complete. A
+     * retry continues the temporary file from its size on the server, which only this upload can have written.
+     */
+    private void uploadFileWithRetries(final List<FTPClient> ftpClients, final int index, final String ftpServer,
+                                       final String username, final String password, final File file,
+                                       final String targetFilePath, final String logPrefix) throws Exception {
+        final boolean resumable = file.length() >= RESUME_MIN_SIZE;
+        final String uploadFilePath = resumable ?
+                targetFilePath + String.format(PART_SUFFIX, UUID.randomUUID().toString().replace("-", "")) :
+                targetFilePath;
+        boolean uploaded = false;
+        try {
+            int retryCount = 0;
+            while (!uploaded) {
+                try {
+                    if (retryCount == 0) {
+                        uploadFile(ftpClients.get(index), file.getAbsolutePath(), uploadFilePath, logPrefix);
+                    } else {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedIOException("Upload stopped");
+                        }
+                        disconnect(ftpClients.get(index));
+                        ftpClients.set(index, getFTPClient(ftpServer, username, password));
+                        if (resumable) {
+                            resumeFile(ftpClients.get(index), file, uploadFilePath, logPrefix);
+                        } else {
+                            uploadFile(ftpClients.get(index), file.getAbsolutePath(), uploadFilePath, logPrefix);
+                        }
+                    }
+                    if (resumable) {
+                        renameFile(ftpClients.get(index), uploadFilePath, targetFilePath, logPrefix);
+                    }
+                    uploaded = true;
+                } catch (Exception e) {
+                    retryCount++;
+                    if (retryCount > MAX_FILE_RETRY_COUNT || e instanceof InterruptedIOException) {
+                        throw e;
+                    }
+                    final long delay = getRetryDelay(retryCount);
+                    logger.warn(String.format(UPLOAD_FILE_FAILURE, logPrefix, targetFilePath, delay, retryCount,
+                            MAX_FILE_RETRY_COUNT, e.getMessage()));
+                    Thread.sleep(delay);
+                }
+            }
+        } finally {
+            if (resumable && !uploaded) {
+                // Do not leave a partial file where it would be served
+                deleteQuietly(ftpClients.get(index), uploadFilePath);
+            }
+        }
+    }
+
+    /**
+     * Continue a partially uploaded temporary file with REST and STOR, or upload it again when nothing can be reused.
+     */
+    private void resumeFile(final FTPClient ftpClient, final File file, final String uploadFilePath,
+                            final String logPrefix) throws IOException {
+        final long offset = getRemoteSize(ftpClient, uploadFilePath);
+        if (offset == file.length()) {
+            // Uploaded completely; only the rename failed
+            return;
+        }
+        if (offset <= 0 || offset > file.length()) {
+            uploadFile(ftpClient, file.getAbsolutePath(), uploadFilePath, logPrefix);
+            return;
+        }
+        logger.quiet(String.format(UPLOAD_FILE_RESUME, logPrefix, uploadFilePath, offset));
+        try (final InputStream is = new FileInputStream(file)) {
+            ByteStreams.skipFully(is, offset);
+            ftpClient.setRestartOffset(offset);
+            ftpClient.storeFile(uploadFilePath, is);
+            checkReply(ftpClient, file.getAbsolutePath(), logPrefix);
+        }
+    }
+
+    /**
+     * Replace the target file with the uploaded temporary file. The target is deleted first, as servers such as
+     * IIS do not rename over an existing file.
+     */
+    private void renameFile(final FTPClient ftpClient, final String uploadFilePath, final String targetFilePath,
+                            final String logPrefix) throws IOException {
+        logger.quiet(String.format(UPLOAD_FILE_RENAME, logPrefix, uploadFilePath, targetFilePath));
+        ftpClient.deleteFile(targetFilePath);
+        if (!ftpClient.rename(uploadFilePath, targetFilePath)) {
+            throw new IOException("Failed to rename " + uploadFilePath + ": " + ftpClient.getReplyString());
+        }
+    }
+
+    private void deleteQuietly(final FTPClient ftpClient, final String filePath) {
+        try {
+            if (ftpClient.isConnected()) {
+                ftpClient.deleteFile(filePath);
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to delete remote file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return size of the remote file, or -1 when it is not known
+     */
+    private long getRemoteSize(final FTPClient ftpClient, final String filePath) {
+        try {
+            if (ftpClient.sendCommand("SIZE", filePath) == FTPReply.FILE_STATUS) {
+                return Long.parseLong(ftpClient.getReplyString().substring(4).trim());
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.debug("Failed to get size of remote file: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Exponential backoff with jitter, so connections failing at the same time do not all retry at the same time.
+     */
+    private static long getRetryDelay(final int retryCount) {
+        final long delay = Math.min(RETRY_MAX_DELAY_MILLIS, RETRY_BASE_DELAY_MILLIS << Math.min(retryCount - 1, 16));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
     /**
      * Upload a single file to FTP server with the provided FTP client object.
      *
      * @param sourceFilePath
-     * @param targetFilePath
+     * @param targetFilePath full remote path of the file
      * @param logPrefix
      * @throws IOException
      */
@@ -138,24 +564,115 @@ public class FTPUploader {
         logger.quiet(String.format(UPLOAD_FILE, logPrefix, sourceFilePath, targetFilePath));
         final File sourceFile = new File(sourceFilePath);
         try (final InputStream is = new FileInputStream(sourceFile)) {
-            ftpClient.changeWorkingDirectory(targetFilePath);
-            ftpClient.storeFile(sourceFile.getName(), is);
-
-            final int replyCode = ftpClient.getReplyCode();
-            final String replyMessage = ftpClient.getReplyString();
-            if (isCommandFailed(replyCode)) {
-                logger.error(String.format(UPLOAD_FILE_REPLY, logPrefix, replyMessage));
-                throw new IOException("Failed to upload file: " + sourceFilePath);
-            } else {
-                logger.quiet(String.format(UPLOAD_FILE_REPLY, logPrefix, replyMessage));
+            ftpClient.storeFile(targetFilePath, is);
+            checkReply(ftpClient, sourceFilePath, logPrefix);
+        }
+    }
+
+    private void checkReply(final FTPClient ftpClient, final String sourceFilePath, final String logPrefix)
+            throws IOException {
+        final int replyCode = ftpClient.getReplyCode();
+        final String replyMessage = ftpClient.getReplyString();
+        if (isCommandFailed(replyCode)) {
+            logger.error(String.format(UPLOAD_FILE_REPLY, logPrefix, replyMessage));
+            throw new IOException("Failed to upload file: " + sourceFilePath);
+        } else {
+            logger.quiet(String.format(UPLOAD_FILE_REPLY, logPrefix, replyMessage));
+        }
+    }
+
+    public static class ManifestEntry {
+        public long size;
+        public String hash;
+    }
+
+    /**
+     * Files uploaded to a target, one line per file with its size and modification time, so files changed since
+     * are uploaded again. The first line identifies the target.
+     */
+    private static class UploadJournal {
+        private final File file;
+        private final String target;
+        private final Set<String> entries = ConcurrentHashMap.newKeySet();
+        private Writer writer;
+
+        UploadJournal(final File file, final String target) {
+            this.file = file;
+            this.target = target;
+        }
+
+        /**
+         * @return number of files recorded by a previous upload to the same target
+         */
+        int load() throws IOException {
+            entries.clear();
+            if (file.exists()) {
+                final List<String> lines = Files.readLines(file, StandardCharsets.UTF_8);
+                if (!lines.isEmpty() && lines.get(0).equals(target)) {
+                    entries.addAll(lines.subList(1, lines.size()));
+                }
             }
+            writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+            writer.write(target + "\n");
+            for (final String entry : entries) {
+                writer.write(entry + "\n");
+            }
+            writer.flush();
+            return entries.size();
+        }
+
+        boolean contains(final String relativePath, final File localFile) {
+            return entries.contains(getEntry(relativePath, localFile));
+        }
+
+        synchronized void record(final String relativePath, final File localFile) throws IOException {
+            writer.write(getEntry(relativePath, localFile) + "\n");
+            writer.flush();
+        }
+
+        void close() {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                // Nothing left to write
+            }
+        }
+
+        void delete() {
+            close();
+            file.delete();
+        }
+
+        private static String getEntry(final String relativePath, final File localFile) {
+            return relativePath + "|" + localFile.length() + "|" + localFile.lastModified();
         }
     }
 
+    private void disconnect(final FTPClient ftpClient) {
+        try {
+            if (ftpClient.isConnected()) {
+                ftpClient.logout();
+                ftpClient.disconnect();
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to disconnect from FTP server: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param ftpServer host name, optionally followed by ':' and the port, e.g. for a local server
+     */
     protected FTPClient getFTPClient(final String ftpServer, final String username, final String password)
             throws Exception {
         final FTPClient ftpClient = new FTPClient();
-        ftpClient.connect(ftpServer);
+        final int portIndex = ftpServer.lastIndexOf(':');
+        if (portIndex > 0 && StringUtils.isNumeric(ftpServer.substring(portIndex + 1))) {
+            ftpClient.connect(ftpServer.substring(0, portIndex), Integer.parseInt(ftpServer.substring(portIndex + 1)));
+        } else {
+            ftpClient.connect(ftpServer);
+        }
         ftpClient.login(username, password);
         ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
         ftpClient.enterLocalPassiveMode();
@@ -0,0 +1,92 @@
+package lenala.azure.gradle.webapp.helpers;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Utility class to deploy to several targets at the same time.
+ * With fail fast, no deployment is started once one has failed; deployments already running are completed either way.
+ */
+public class ParallelDeployer<T> {
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final String DEPLOY_TARGETS_START = "Deploying to %d target(s), %d at a time";
+    private static final String DEPLOY_TARGET_FAILURE = "Failed to deploy to %s: %s";
+    private static final String DEPLOY_TARGET_STATUS = "%s: %s";
+    private static final String DEPLOY_TARGETS_FAILURE = "Deployment did not succeed for %d of %d target(s)";
+
+    public enum Status {
+        SUCCEEDED, FAILED, SKIPPED
+    }
+
+    @FunctionalInterface
+    public interface TargetDeployment<T> {
+        void deploy(T target) throws Exception;
+    }
+
+    private final Logger logger;
+    private final int concurrency;
+    private final boolean failFast;
+
+    public ParallelDeployer(final Logger logger, final int concurrency, final boolean failFast) {
+        this.logger = logger;
+        this.concurrency = Math.max(1, concurrency);
+        this.failFast = failFast;
+    }
+
+    /**
+     * @return status of each target, in the order of the targets
+     * @throws GradleException when deploying to any target did not succeed
+     */
+    public Map<T, Status> deploy(final List<T> targets, final TargetDeployment<T> deployment)
+            throws GradleException {
+        final int threadCount = Math.max(1, Math.min(concurrency, targets.size()));
+        logger.quiet(String.format(DEPLOY_TARGETS_START, targets.size(), threadCount));
+
+        final AtomicBoolean failed = new AtomicBoolean();
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final Map<T, Status> statuses = new LinkedHashMap<>();
+        try {
+            final List<Future<Status>> futures = new ArrayList<>();
+            for (final T target : targets) {
+                futures.add(executor.submit(() -> {
+                    if (failFast && failed.get()) {
+                        return Status.SKIPPED;
+                    }
+                    try {
+                        deployment.deploy(target);
+                        return Status.SUCCEEDED;
+                    } catch (Exception e) {
+                        failed.set(true);
+                        logger.error(String.format(DEPLOY_TARGET_FAILURE, target, e.getMessage()), e);
+                        return Status.FAILED;
+                    }
+                }));
+            }
+            for (int i = 0; i < targets.size(); i++) {
+                statuses.put(targets.get(i), futures.get(i).get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new GradleException(e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        statuses.forEach((target, status) -> logger.quiet(String.format(DEPLOY_TARGET_STATUS, target, status)));
+        final long failedCount = statuses.values().stream().filter(status -> status != Status.SUCCEEDED).count();
+        if (failedCount > 0) {
+            throw new GradleException(String.format(DEPLOY_TARGETS_FAILURE, failedCount, targets.size()));
+        }
+        return statuses;
+    }
+}
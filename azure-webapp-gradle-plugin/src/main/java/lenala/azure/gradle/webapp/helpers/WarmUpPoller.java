@@ -0,0 +1,76 @@
+package lenala.azure.gradle.webapp.helpers;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Utility class to wait for a freshly deployed app to answer requests.
+ * The app is warm once the given number of requests in a row succeed within the latency limit.
+ */
+public class WarmUpPoller {
+    private static final String WARM_UP_START = "Warming up %s...";
+    private static final String WARM_UP_REQUEST = "GET %s: %s in %d ms";
+    private static final String WARM_UP_DONE = "%s is warm after %d ms.";
+    private static final String WARM_UP_TIMEOUT = "%s did not warm up within %d seconds";
+
+    private static final int POLL_INTERVAL_MILLIS = 2000;
+    private static final int MAX_REQUEST_TIMEOUT_MILLIS = 30000;
+
+    private final Logger logger;
+    private final long timeoutMillis;
+    private final long maxLatencyMillis;
+    private final int successCount;
+
+    public WarmUpPoller(final Logger logger, final int timeoutSeconds, final long maxLatencyMillis,
+                        final int successCount) {
+        this.logger = logger;
+        this.timeoutMillis = timeoutSeconds * 1000L;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.successCount = Math.max(1, successCount);
+    }
+
+    /**
+     * @throws GradleException when the app is not warm within the timeout
+     */
+    public void waitUntilWarm(final String url) throws GradleException {
+        logger.quiet(String.format(WARM_UP_START, url));
+        final long start = System.currentTimeMillis();
+        final long deadline = start + timeoutMillis;
+        int succeeded = 0;
+        while (true) {
+            final int requestTimeout = (int) Math.max(1, Math.min(MAX_REQUEST_TIMEOUT_MILLIS,
+                    deadline - System.currentTimeMillis()));
+            final long requestStart = System.currentTimeMillis();
+            String status;
+            boolean success;
+            try {
+                final int code = WarmUpProbe.get(url, requestTimeout);
+                status = String.valueOf(code);
+                success = code < HttpURLConnection.HTTP_BAD_REQUEST;
+            } catch (IOException e) {
+                status = e.toString();
+                success = false;
+            }
+            final long latency = System.currentTimeMillis() - requestStart;
+            logger.info(String.format(WARM_UP_REQUEST, url, status, latency));
+
+            succeeded = success && (maxLatencyMillis <= 0 || latency <= maxLatencyMillis) ? succeeded + 1 : 0;
+            if (succeeded >= successCount) {
+                logger.quiet(String.format(WARM_UP_DONE, url, System.currentTimeMillis() - start));
+                return;
+            }
+            if (System.currentTimeMillis() + POLL_INTERVAL_MILLIS > deadline) {
+                throw new GradleException(String.format(WARM_UP_TIMEOUT, url, timeoutMillis / 1000));
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GradleException(String.format(WARM_UP_TIMEOUT, url, timeoutMillis / 1000), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package lenala.azure.gradle.webapp.helpers;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Utility class to warm a deployed app up with concurrent requests, and measure how fast it answers them.
+ * Latencies include reading the whole response; failed requests count with the time they took to fail.
+ */
+public class WarmUpProbe {
+    public static final int DEFAULT_REQUEST_COUNT = 20;
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private static final int REQUEST_TIMEOUT_MILLIS = 60000;
+
+    private static final String PROBE_START = "Warming up %s with %d request(s) per path, %d at a time...";
+    private static final String PROBE_FAILURE = "GET %s failed: %s";
+    private static final String PROBE_RESULT = "Warm-up latency: p50 %d ms, p95 %d ms, p99 %d ms, max %d ms; " +
+            "%d of %d request(s) failed";
+    private static final String LATENCY_BUDGET_EXCEEDED = "Warm-up p95 latency of %d ms exceeds the budget of %d ms";
+    private static final String REQUESTS_FAILED = "%d of %d warm-up request(s) failed";
+
+    public static class Result {
+        private final List<Long> latencies;
+        private final int failureCount;
+
+        Result(final List<Long> latencies, final int failureCount) {
+            this.latencies = new ArrayList<>(latencies);
+            Collections.sort(this.latencies);
+            this.failureCount = failureCount;
+        }
+
+        public int getRequestCount() {
+            return latencies.size();
+        }
+
+        public int getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * @return the nearest-rank percentile of the request latencies in milliseconds, 0 without requests
+         */
+        public long getPercentile(final double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            final int rank = (int) Math.ceil(percentile / 100 * latencies.size());
+            return latencies.get(Math.min(latencies.size(), Math.max(1, rank)) - 1);
+        }
+
+        public long getMax() {
+            return latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1);
+        }
+    }
+
+    private final Logger logger;
+    private final int requestCount;
+    private final int concurrency;
+
+    public WarmUpProbe(final Logger logger, final int requestCount, final int concurrency) {
+        this.logger = logger;
+        this.requestCount = Math.max(1, requestCount);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Send the requests to each of the paths on the base URL, e.g. https://myapp.azurewebsites.net.
+     */
+    public Result probe(final String baseUrl, final List<String> paths) throws GradleException {
+        logger.quiet(String.format(PROBE_START, baseUrl, requestCount, concurrency));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            final List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < requestCount; i++) {
+                for (final String path : paths) {
+                    final String url = getUrl(baseUrl, path);
+                    futures.add(executor.submit(() -> timeRequest(url)));
+                }
+            }
+
+            final List<Long> latencies = new ArrayList<>();
+            int failureCount = 0;
+            for (final Future<Long> future : futures) {
+                final long latency = future.get();
+                if (latency < 0) {
+                    failureCount++;
+                }
+                latencies.add(Math.abs(latency));
+            }
+            final Result result = new Result(latencies, failureCount);
+            logger.quiet(String.format(PROBE_RESULT, result.getPercentile(50), result.getPercentile(95),
+                    result.getPercentile(99), result.getMax(), failureCount, result.getRequestCount()));
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            throw new GradleException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param latencyBudgetMillis p95 latency allowed, 0 for no budget
+     * @throws GradleException when the budget is exceeded, or requests failed under a budget
+     */
+    public static void assureLatencyBudget(final Result result, final long latencyBudgetMillis)
+            throws GradleException {
+        if (latencyBudgetMillis <= 0) {
+            return;
+        }
+        if (result.getFailureCount() > 0) {
+            throw new GradleException(String.format(REQUESTS_FAILED,
+                    result.getFailureCount(), result.getRequestCount()));
+        }
+        if (result.getPercentile(95) > latencyBudgetMillis) {
+            throw new GradleException(String.format(LATENCY_BUDGET_EXCEEDED,
+                    result.getPercentile(95), latencyBudgetMillis));
+        }
+    }
+
+    /**
+     * @return the latency in milliseconds, negated when the request failed
+     */
+    private long timeRequest(final String url) {
+        final long start = System.currentTimeMillis();
+        String failure = null;
+        try {
+            final int code = get(url, REQUEST_TIMEOUT_MILLIS);
+            if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                failure = "HTTP " + code;
+            }
+        } catch (IOException e) {
+            failure = e.toString();
+        }
+        final long latency = System.currentTimeMillis() - start;
+        if (failure != null) {
+            logger.info(String.format(PROBE_FAILURE, url, failure));
+            return -Math.max(1, latency);
+        }
+        return latency;
+    }
+
+    public static String getUrl(final String baseUrl, final String path) {
+        final String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        return base + (path.startsWith("/") ? path : "/" + path);
+    }
+
+    /**
+     * @return the status code, after reading the whole response so that it is timed as well
+     */
+    static int get(final String url, final int timeoutMillis) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setInstanceFollowRedirects(false);
+            final int code = connection.getResponseCode();
+            final InputStream body = code < HttpURLConnection.HTTP_BAD_REQUEST ?
+                    connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    final byte[] buffer = new byte[8192];
+                    while (in.read(buffer) != -1) {
+                        // drain
+                    }
+                }
+            }
+            return code;
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -2,61 +2,116 @@ package lenala.azure.gradle.webapp.helpers;
 
 import lenala.azure.gradle.webapp.AzureWebAppExtension;
 import lenala.azure.gradle.webapp.DeployTask;
+import lenala.azure.gradle.webapp.configuration.AppTarget;
 import lenala.azure.gradle.webapp.configuration.AppService;
 import lenala.azure.gradle.webapp.configuration.DockerImageType;
-import com.microsoft.azure.management.Azure;
 import com.microsoft.azure.management.appservice.AppServicePlan;
+import com.microsoft.azure.management.appservice.DeploymentSlot;
 import com.microsoft.azure.management.appservice.OperatingSystem;
 import com.microsoft.azure.management.appservice.RuntimeStack;
 import com.microsoft.azure.management.appservice.WebApp;
+import com.microsoft.azure.management.appservice.WebAppBase;
+import com.microsoft.azure.management.appservice.implementation.SiteConfigResourceInner;
+import com.microsoft.azure.management.resources.ResourceGroup;
+import com.microsoft.azure.management.resources.fluentcore.arm.models.GroupableResource;
+import com.microsoft.azure.management.resources.fluentcore.model.Creatable;
 import com.microsoft.azure.management.resources.fluentcore.utils.SdkContext;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.tasks.TaskExecutionException;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.APP_SERVICE_PROPERTY_MISSING_TEMPLATE;
 import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.NOT_COMPATIBLE_WEBAPP_TEMPLATE;
 import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.PROPERTY_MISSING_TEMPLATE;
 import static lenala.azure.gradle.webapp.helpers.CommonStringTemplates.UNKNOWN_VALUE_TEMPLATE;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 public class WebAppUtils {
+    public static final String DOCKER_IMAGE_PREFIX = "DOCKER|";
+    public static final String DOCKER_CUSTOM_IMAGE_NAME = "DOCKER_CUSTOM_IMAGE_NAME";
+    public static final String DOCKER_REGISTRY_SERVER_URL = "DOCKER_REGISTRY_SERVER_URL";
+    public static final String DOCKER_REGISTRY_SERVER_USERNAME = "DOCKER_REGISTRY_SERVER_USERNAME";
+    public static final String DOCKER_REGISTRY_SERVER_PASSWORD = "DOCKER_REGISTRY_SERVER_PASSWORD";
+
     private static final String SERVICE_PLAN_NOT_APPLICABLE = "The App Service Plan '%s' is not a %s Plan";
 
-    private static final String CREATE_SERVICE_PLAN = "Creating App Service Plan '%s'...";
+    private static final String CREATE_SERVICE_PLAN = "App Service Plan '%s' will be created with the Web App.";
     private static final String SERVICE_PLAN_EXIST = "Found existing App Service Plan '%s' in Resource Group '%s'.";
-    private static final String SERVICE_PLAN_CREATED = "Successfully created App Service Plan.";
 
-    private static boolean isLinuxWebApp(final WebApp app) {
+    private static final String[] CONTAINER_SETTINGS = {DOCKER_CUSTOM_IMAGE_NAME, DOCKER_REGISTRY_SERVER_URL,
+            DOCKER_REGISTRY_SERVER_USERNAME, DOCKER_REGISTRY_SERVER_PASSWORD};
+
+    private static boolean isLinuxWebApp(final WebAppBase app) {
         return app.inner().kind().contains("linux");
     }
 
-    public static void assureLinuxWebApp(final WebApp app) throws GradleException {
+    public static void assureLinuxWebApp(final WebAppBase app) throws GradleException {
         if (!isLinuxWebApp(app)) {
             throw new GradleException(String.format(NOT_COMPATIBLE_WEBAPP_TEMPLATE, "Linux"));
         }
     }
 
-    public static void assureWindowsWebApp(final WebApp app) throws TaskExecutionException {
+    public static void assureWindowsWebApp(final WebAppBase app) throws TaskExecutionException {
         if (isLinuxWebApp(app)) {
             throw new GradleException(String.format(NOT_COMPATIBLE_WEBAPP_TEMPLATE, "Windows"));
         }
     }
 
-    public static WebApp.DefinitionStages.WithDockerContainerImage defineLinuxApp(
-            DeployTask task,
-            final AppServicePlan plan
-    ) throws Exception {
-        assureLinuxPlan(plan);
+    /**
+     * The returned update sets the container settings of the image of a Linux deployment slot, and removes the other
+     * ones. The image itself is set by {@link #updateSlotLinuxFxVersion} once the update is applied.
+     * <p>
+     * The registry password is written as the app setting DOCKER_REGISTRY_SERVER_PASSWORD in plain text, as the SDK
+     * does for the image of a Web App, so anyone allowed to read the slot's app settings can read it.
+     */
+    public static WebAppBase.Update<DeploymentSlot> updateSlotContainerSettings(
+            final DeploymentSlot slot, final Map<String, String> containerSettings) {
+        assureLinuxWebApp(slot);
+        WebAppBase.Update<DeploymentSlot> update = slot.update().withAppSettings(containerSettings);
+        for (final String setting : CONTAINER_SETTINGS) {
+            if (!containerSettings.containsKey(setting)) {
+                update = update.withoutAppSetting(setting);
+            }
+        }
+        return update;
+    }
+
+    /**
+     * Set the image of a Linux deployment slot, e.g. "TOMCAT|8.5-jre8" or "DOCKER|nginx". Slot updates of the SDK
+     * cannot change the image, so the site config of the slot is patched on its own.
+     */
+    public static void updateSlotLinuxFxVersion(final DeploymentSlot slot, final String linuxFxVersion) {
+        slot.manager().inner().webApps().updateConfigurationSlot(slot.resourceGroupName(), slot.parent().name(),
+                slot.name(), new SiteConfigResourceInner().withLinuxFxVersion(linuxFxVersion));
+    }
 
-        final String resourceGroup = task.getAzureWebAppExtension().getResourceGroup();
-        final WebApp.DefinitionStages.ExistingLinuxPlanWithGroup existingLinuxPlanWithGroup = task.getAzureClient().webApps()
-                .define(task.getAzureWebAppExtension().getAppName())
-                .withExistingLinuxPlan(plan);
-        return task.getAzureClient().resourceGroups().contain(resourceGroup) ?
-                existingLinuxPlanWithGroup.withExistingResourceGroup(resourceGroup) :
-                existingLinuxPlanWithGroup.withNewResourceGroup(resourceGroup);
+    /**
+     * Define a Linux Web App on the configured App Service Plan. A missing plan and missing resource groups are
+     * defined as dependencies of the Web App, and created together with it.
+     */
+    public static WebApp.DefinitionStages.WithDockerContainerImage defineLinuxApp(DeployTask task, AppTarget target)
+            throws Exception {
+        final AppServicePlan plan = getAppServicePlan(task, target);
+        final String resourceGroup = target.getResourceGroup();
+        final Map<String, Creatable<ResourceGroup>> newResourceGroups = new HashMap<>();
+        if (plan != null) {
+            assureLinuxPlan(plan);
+            final WebApp.DefinitionStages.ExistingLinuxPlanWithGroup existingLinuxPlanWithGroup = task.getAzureClient().webApps()
+                    .define(target.getAppName())
+                    .withExistingLinuxPlan(plan);
+            return task.isResourceGroupExist(resourceGroup) ?
+                    existingLinuxPlanWithGroup.withExistingResourceGroup(resourceGroup) :
+                    existingLinuxPlanWithGroup.withNewResourceGroup(
+                            defineResourceGroup(task, target, resourceGroup, newResourceGroups));
+        }
+        return withResourceGroup(task, target, defineApp(task, target), resourceGroup, newResourceGroups)
+                .withNewLinuxPlan(defineAppServicePlan(task, target, OperatingSystem.LINUX, newResourceGroups));
     }
 
     private static void assureLinuxPlan(final AppServicePlan plan) throws GradleException {
@@ -66,21 +121,31 @@ public class WebAppUtils {
         }
     }
 
-    public static WebApp.DefinitionStages.WithCreate defineWindowsApp(DeployTask task, final AppServicePlan plan)
+    /**
+     * Define a Windows Web App on the configured App Service Plan. A missing plan and missing resource groups are
+     * defined as dependencies of the Web App, and created together with it.
+     */
+    public static WebApp.DefinitionStages.WithCreate defineWindowsApp(DeployTask task, AppTarget target)
             throws Exception {
-        assureWindowsPlan(plan);
-
-        if (task.getAzureWebAppExtension().getAppName() == null) {
+        if (target.getAppName() == null) {
             throw new GradleException(String.format(PROPERTY_MISSING_TEMPLATE, "azureWebapp.appName"));
         }
 
-        final String resourceGroup = task.getAzureWebAppExtension().getResourceGroup();
-        final WebApp.DefinitionStages.ExistingWindowsPlanWithGroup existingWindowsPlanWithGroup =  task.getAzureClient().webApps()
-                .define(task.getAzureWebAppExtension().getAppName())
-                .withExistingWindowsPlan(plan);
-        return task.getAzureClient().resourceGroups().contain(resourceGroup) ?
-                existingWindowsPlanWithGroup.withExistingResourceGroup(resourceGroup) :
-                existingWindowsPlanWithGroup.withNewResourceGroup(resourceGroup);
+        final AppServicePlan plan = getAppServicePlan(task, target);
+        final String resourceGroup = target.getResourceGroup();
+        final Map<String, Creatable<ResourceGroup>> newResourceGroups = new HashMap<>();
+        if (plan != null) {
+            assureWindowsPlan(plan);
+            final WebApp.DefinitionStages.ExistingWindowsPlanWithGroup existingWindowsPlanWithGroup = task.getAzureClient().webApps()
+                    .define(target.getAppName())
+                    .withExistingWindowsPlan(plan);
+            return task.isResourceGroupExist(resourceGroup) ?
+                    existingWindowsPlanWithGroup.withExistingResourceGroup(resourceGroup) :
+                    existingWindowsPlanWithGroup.withNewResourceGroup(
+                            defineResourceGroup(task, target, resourceGroup, newResourceGroups));
+        }
+        return withResourceGroup(task, target, defineApp(task, target), resourceGroup, newResourceGroups)
+                .withNewWindowsPlan(defineAppServicePlan(task, target, OperatingSystem.WINDOWS, newResourceGroups));
     }
 
     private static void assureWindowsPlan(final AppServicePlan plan) throws GradleException {
@@ -90,43 +155,83 @@ public class WebAppUtils {
         }
     }
 
-    public static AppServicePlan createOrGetAppServicePlan(DeployTask task, OperatingSystem os)
-            throws Exception {
-        AzureWebAppExtension extension = task.getAzureWebAppExtension();
-        AppServicePlan plan = null;
-        final String servicePlanResGrp = isNotEmpty(extension.getAppServicePlanResourceGroup())
-                ? extension.getAppServicePlanResourceGroup() : extension.getResourceGroup();
-
-        String servicePlanName = extension.getAppServicePlanName();
-        if (isNotEmpty(servicePlanName)) {
-            plan = task.getAzureClient().appServices().appServicePlans()
-                    .getByResourceGroup(servicePlanResGrp, servicePlanName);
-        } else {
-            servicePlanName = SdkContext.randomResourceName("ServicePlan", 18);
+    private static String getAppServicePlanResourceGroup(final AzureWebAppExtension extension,
+                                                         final AppTarget target) {
+        return isNotEmpty(extension.getAppServicePlanResourceGroup())
+                ? extension.getAppServicePlanResourceGroup() : target.getResourceGroup();
+    }
+
+    /**
+     * @return the configured App Service Plan, or null when it has to be created.
+     */
+    private static AppServicePlan getAppServicePlan(DeployTask task, AppTarget target) throws Exception {
+        final AzureWebAppExtension extension = task.getAzureWebAppExtension();
+        final String servicePlanResGrp = getAppServicePlanResourceGroup(extension, target);
+        final String servicePlanName = extension.getAppServicePlanName();
+        // No need to look the plan up in a resource group which does not exist yet
+        if (isEmpty(servicePlanName) || !task.isResourceGroupExist(servicePlanResGrp)) {
+            return null;
         }
 
-        final Azure azure = task.getAzureClient();
-        if (plan == null) {
-            task.getLogger().quiet(String.format(CREATE_SERVICE_PLAN, servicePlanName));
+        final AppServicePlan plan = task.getAzureClient().appServices().appServicePlans()
+                .getByResourceGroup(servicePlanResGrp, servicePlanName);
+        if (plan != null) {
+            task.getLogger().quiet(String.format(SERVICE_PLAN_EXIST, servicePlanName, servicePlanResGrp));
+        }
+        return plan;
+    }
 
-            final AppServicePlan.DefinitionStages.WithGroup withGroup = azure.appServices().appServicePlans()
-                    .define(servicePlanName)
-                    .withRegion(extension.getRegion());
+    private static WebApp.DefinitionStages.NewAppServicePlanWithGroup defineApp(DeployTask task, AppTarget target)
+            throws Exception {
+        return task.getAzureClient().webApps()
+                .define(target.getAppName())
+                .withRegion(target.getRegion());
+    }
 
-            final AppServicePlan.DefinitionStages.WithPricingTier withPricingTier
-                    = azure.resourceGroups().contain(servicePlanResGrp) ?
-                    withGroup.withExistingResourceGroup(servicePlanResGrp) :
-                    withGroup.withNewResourceGroup(servicePlanResGrp);
+    private static Creatable<AppServicePlan> defineAppServicePlan(DeployTask task, AppTarget target,
+                                                                  OperatingSystem os,
+                                                                  Map<String, Creatable<ResourceGroup>> newResourceGroups)
+            throws Exception {
+        final AzureWebAppExtension extension = task.getAzureWebAppExtension();
+        final String servicePlanName = isNotEmpty(extension.getAppServicePlanName())
+                ? extension.getAppServicePlanName() : SdkContext.randomResourceName("ServicePlan", 18);
+        task.getLogger().quiet(String.format(CREATE_SERVICE_PLAN, servicePlanName));
 
-            plan = withPricingTier.withPricingTier(extension.getPricingTier())
-                    .withOperatingSystem(os).create();
+        final AppServicePlan.DefinitionStages.WithGroup withGroup = task.getAzureClient().appServices()
+                .appServicePlans()
+                .define(servicePlanName)
+                .withRegion(target.getRegion());
+        return withResourceGroup(task, target, withGroup, getAppServicePlanResourceGroup(extension, target),
+                newResourceGroups)
+                .withPricingTier(extension.getPricingTier())
+                .withOperatingSystem(os);
+    }
 
-            task.getLogger().quiet(SERVICE_PLAN_CREATED);
-        } else {
-            task.getLogger().quiet(String.format(SERVICE_PLAN_EXIST, servicePlanName, servicePlanResGrp));
-        }
+    private static <T> T withResourceGroup(DeployTask task, AppTarget target,
+                                           GroupableResource.DefinitionStages.WithGroup<T> withGroup,
+                                           String resourceGroup,
+                                           Map<String, Creatable<ResourceGroup>> newResourceGroups) throws Exception {
+        return task.isResourceGroupExist(resourceGroup) ?
+                withGroup.withExistingResourceGroup(resourceGroup) :
+                withGroup.withNewResourceGroup(defineResourceGroup(task, target, resourceGroup, newResourceGroups));
+    }
 
-        return plan;
+    /**
+     * A resource group used by both the plan and the Web App is defined once, so that it is created once.
+     */
+    private static Creatable<ResourceGroup> defineResourceGroup(DeployTask task, AppTarget target,
+                                                                String resourceGroup,
+                                                                Map<String, Creatable<ResourceGroup>> newResourceGroups)
+            throws Exception {
+        final String key = resourceGroup.toLowerCase(Locale.ENGLISH);
+        Creatable<ResourceGroup> creatable = newResourceGroups.get(key);
+        if (creatable == null) {
+            creatable = task.getAzureClient().resourceGroups()
+                    .define(resourceGroup)
+                    .withRegion(target.getRegion());
+            newResourceGroups.put(key, creatable);
+        }
+        return creatable;
     }
 
     public static DockerImageType getDockerImageTypeFromName(final AppService appService) {
@@ -0,0 +1,106 @@
+package lenala.azure.gradle.webapp.helpers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logging;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WarmUpProbeTest {
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            requestCount.incrementAndGet();
+            respond(exchange, 200);
+        });
+        server.createContext("/slow", exchange -> {
+            requestCount.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200);
+        });
+        server.createContext("/error", exchange -> {
+            requestCount.incrementAndGet();
+            respond(exchange, 500);
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static void respond(final HttpExchange exchange, final int code) throws IOException {
+        final byte[] body = "warm".getBytes("UTF-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private WarmUpProbe.Result probe(final String... paths) {
+        return new WarmUpProbe(Logging.getLogger(WarmUpProbeTest.class), 5, 3).probe(baseUrl, Arrays.asList(paths));
+    }
+
+    @Test
+    public void sendsRequestsToEachPath() {
+        final WarmUpProbe.Result result = probe("/ok", "slow");
+
+        assertEquals(10, requestCount.get());
+        assertEquals(10, result.getRequestCount());
+        assertEquals(0, result.getFailureCount());
+        assertTrue(result.getPercentile(99) >= 200);
+        assertTrue(result.getPercentile(50) <= result.getPercentile(95));
+        WarmUpProbe.assureLatencyBudget(result, 10000);
+    }
+
+    @Test
+    public void countsFailedRequests() {
+        final WarmUpProbe.Result result = probe("/ok", "/error");
+
+        assertEquals(5, result.getFailureCount());
+        WarmUpProbe.assureLatencyBudget(result, 0);
+    }
+
+    @Test(expected = GradleException.class)
+    public void failsOnFailedRequestsUnderBudget() {
+        WarmUpProbe.assureLatencyBudget(probe("/error"), 10000);
+    }
+
+    @Test(expected = GradleException.class)
+    public void failsWhenBudgetIsExceeded() {
+        WarmUpProbe.assureLatencyBudget(probe("/slow"), 100);
+    }
+
+    @Test
+    public void computesNearestRankPercentiles() {
+        final WarmUpProbe.Result result = new WarmUpProbe.Result(Arrays.asList(40L, 10L, 30L, 20L), 0);
+
+        assertEquals(20, result.getPercentile(50));
+        assertEquals(40, result.getPercentile(95));
+        assertEquals(40, result.getMax());
+        assertEquals(0, new WarmUpProbe.Result(Collections.<Long>emptyList(), 0).getPercentile(50));
+    }
+}